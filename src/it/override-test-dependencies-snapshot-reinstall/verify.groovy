@@ -0,0 +1,13 @@
+import java.util.jar.JarFile
+
+def log = new File(basedir, 'build.log').text
+assert !log.contains('Test dependencies are up to date')
+
+def hpi = new JarFile(new File(basedir, 'dependant/target/test-classes/test-dependencies/snapshot-reinstall-upstream.hpi'))
+try {
+    assert hpi.manifest.mainAttributes.getValue('Marker') == 'second'
+} finally {
+    hpi.close()
+}
+
+return true
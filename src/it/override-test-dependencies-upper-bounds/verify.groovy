@@ -0,0 +1,20 @@
+import java.util.jar.JarFile
+
+def log = new File(basedir, 'build.log').text
+def updates = log.readLines().findAll { it.contains('After resolving, updates: ') }.collect {
+    it.substring(it.indexOf('After resolving, updates: '))
+}
+assert updates.size() == 1
+assert updates[0].contains('upper-bounds-a')
+assert updates[0].contains('upper-bounds-b')
+
+['upper-bounds-a', 'upper-bounds-b'].each { name ->
+    def hpi = new JarFile(new File(basedir, "dependant/target/test-classes/test-dependencies/${name}.hpi"))
+    try {
+        assert hpi.manifest.mainAttributes.getValue('Plugin-Version') == '2.0'
+    } finally {
+        hpi.close()
+    }
+}
+
+return true
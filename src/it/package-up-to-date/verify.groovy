@@ -0,0 +1,17 @@
+import java.util.jar.JarFile
+
+def log = new File(basedir, 'build.log').text
+assert log.count('Packaging package-up-to-date-it.hpi as ') == 3
+assert log.count('Skipping packaging as package-up-to-date-it.hpi is up to date') == 2
+assert log.contains('configuration changed')
+assert log.contains('webapp changed')
+
+def hpi = new JarFile(new File(basedir, 'target/package-up-to-date-it.hpi'))
+try {
+    assert hpi.manifest.mainAttributes.getValue('Custom-Entry') == 'two'
+    assert hpi.getInputStream(hpi.getEntry('help-globalConfig.html')).text.contains('Greeting: bonjour')
+} finally {
+    hpi.close()
+}
+
+return true
@@ -0,0 +1,26 @@
+import java.util.jar.JarFile
+
+def entries(String name) {
+    def hpi = new JarFile(new File(basedir, "target/${name}/stream-webapp-it.hpi"))
+    try {
+        return hpi.entries().toList().collect { entry ->
+            // the plugin jar is built from classes compiled again by each invocation, so only its name is compared
+            entry.name.endsWith('.jar') ? entry.name : "${entry.name} ${entry.size} ${entry.crc}"
+        }
+    } finally {
+        hpi.close()
+    }
+}
+
+def copied = entries('copied')
+assert copied.any { it.startsWith('css/style.css ') }
+assert copied.any { it.startsWith('js/lib/util.js ') }
+assert copied.any { it.startsWith('help-globalConfig.html ') }
+// the same entries in the same order
+assert entries('streamed') == copied
+
+def log = new File(basedir, 'build.log').text
+assert log.count('Not streaming webapp content into the .hpi as reproducible builds are disabled') == 1
+assert entries('streamed-unreproducible').toSet() == entries('copied-unreproducible').toSet()
+
+return true
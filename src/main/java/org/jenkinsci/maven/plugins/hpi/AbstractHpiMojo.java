@@ -17,28 +17,24 @@ package org.jenkinsci.maven.plugins.hpi;
  */
 
 import edu.umd.cs.findbugs.annotations.CheckForNull;
-import hudson.Extension;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.URL;
-import java.net.URLClassLoader;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.TreeSet;
 import jenkins.YesNoMaybe;
-import net.java.sezpoz.Index;
-import net.java.sezpoz.IndexItem;
 import org.apache.commons.io.IOUtils;
 import org.apache.maven.RepositoryUtils;
 import org.apache.maven.artifact.Artifact;
@@ -248,6 +244,14 @@ public abstract class AbstractHpiMojo extends AbstractJenkinsMojo {
     @Parameter(defaultValue = "${hpi.bundledArtifacts}")
     private List<String> bundledArtifacts;
 
+    /**
+     * Number of threads used to inspect dependencies concurrently,
+     * for example when deciding which of them are plugins.
+     * Defaults to the number of available processors; {@code 1} inspects them one at a time.
+     */
+    @Parameter(property = "hpi.threads", defaultValue = "0")
+    protected int threads;
+
     /**
      * If true, test scope dependencies count as if they are normal dependencies.
      * This is only useful during hpi:run, so not exposing it as a configurable parameter.
@@ -276,6 +280,13 @@ public abstract class AbstractHpiMojo extends AbstractJenkinsMojo {
         this.warSourceDirectory = warSourceDirectory;
     }
 
+    /**
+     * @return the effective value of {@link #threads}
+     */
+    protected int getThreads() {
+        return threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+
     public File getContainerConfigXML() {
         return containerConfigXML;
     }
@@ -341,7 +352,18 @@ public abstract class AbstractHpiMojo extends AbstractJenkinsMojo {
     }
 
     public void buildExplodedWebapp(File webappDirectory, File jarFile) throws MojoExecutionException {
-        getLog().info("Exploding webapp...");
+        assembleWebapp(webappDirectory, jarFile, false);
+    }
+
+    /**
+     * Assembles the webapp in the specified directory.
+     *
+     * @param streaming if true, dependencies, the plugin jar and the contents of {@link #warSourceDirectory}
+     *                  are not copied but only listed in {@link WebappContentState#streamed}
+     */
+    WebappContentState assembleWebapp(File webappDirectory, File jarFile, boolean streaming)
+            throws MojoExecutionException {
+        getLog().info(streaming ? "Assembling webapp..." : "Exploding webapp...");
 
         try {
             Files.createDirectories(webappDirectory.toPath());
@@ -369,17 +391,29 @@ public abstract class AbstractHpiMojo extends AbstractJenkinsMojo {
                 copyResourcesWithFiltering(webResources, webappDirectory);
             }
 
-            copyResources(warSourceDirectory, webappDirectory);
+            File stateFile = new File(
+                    project.getBuild().getDirectory(),
+                    "maven-status/maven-hpi-plugin/webapp/" + webappDirectory.getName() + ".properties");
+            WebappContentState content = streaming
+                    ? WebappContentState.streaming(stateFile, webappDirectory)
+                    : WebappContentState.load(stateFile, webappDirectory);
+
+            copyResources(warSourceDirectory, webappDirectory, content);
 
             if (containerConfigXML != null && StringUtils.isNotEmpty(containerConfigXML.getName())) {
                 metainfDir = new File(webappDirectory, META_INF);
                 String xmlFileName = containerConfigXML.getName();
-                FileUtils.copyFileIfModified(containerConfigXML, new File(metainfDir, xmlFileName));
+                content.place(containerConfigXML, new File(metainfDir, xmlFileName));
             }
 
-            buildWebapp(project, webappDirectory);
+            buildWebapp(project, webappDirectory, content);
 
-            FileUtils.copyFileIfModified(jarFile, new File(getWebappDirectory(), "WEB-INF/lib/" + jarFile.getName()));
+            content.place(jarFile, new File(getWebappDirectory(), "WEB-INF/lib/" + jarFile.getName()));
+
+            content.prune();
+            content.save();
+            getLog().info("Webapp content: " + content);
+            return content;
         } catch (IOException e) {
             throw new MojoExecutionException("Could not explode webapp...", e);
         } catch (MavenFilteringException e) {
@@ -387,6 +421,44 @@ public abstract class AbstractHpiMojo extends AbstractJenkinsMojo {
         }
     }
 
+    /**
+     * Adds what {@link #buildExplodedWebapp} assembles the webapp from to a fingerprint:
+     * the web resources as the {@code webapp} component and the runtime dependencies,
+     * from which the bundled libraries are chosen, as the {@code dependencies} component.
+     */
+    void fingerprintWebapp(PackagingFingerprint fingerprint) throws IOException {
+        fingerprint.value("webapp", String.join(",", getIncludes()) + ";" + String.join(",", getExcludes()));
+        fingerprint.tree("webapp", warSourceDirectory);
+        fingerprint.file("webapp", containerConfigXML);
+        if (webResources != null) {
+            for (Resource r : webResources) {
+                fingerprint.value(
+                        "webapp",
+                        r.getTargetPath() + " " + r.isFiltering() + " " + r.getIncludes() + " " + r.getExcludes());
+                fingerprint.tree("webapp", r.getDirectory() != null ? new File(r.getDirectory()) : null);
+            }
+        }
+        if (filters != null) {
+            for (String filter : filters) {
+                fingerprint.file("webapp", new File(filter));
+            }
+        }
+        if (webResources != null && Arrays.stream(webResources).anyMatch(Resource::isFiltering)) {
+            // along with the filter files above, what filtered resources are expected to refer to;
+            // not system properties, which include the whole environment and would differ from one shell to the next,
+            // so a resource filtering in ${env.SOMETHING} is not repackaged when only that changes
+            fingerprint.value("webapp", new TreeMap<>(project.getProperties()).toString());
+            fingerprint.value("webapp", new TreeMap<>(session.getUserProperties()).toString());
+        }
+        for (MavenArtifact artifact : getProjectArtfacts()) {
+            fingerprint.value(
+                    "dependencies",
+                    artifact.getId() + " " + artifact.getScope() + " " + artifact.isOptional() + " "
+                            + artifact.getDependencyTrail());
+            fingerprint.file("dependencies", artifact.artifact.getFile());
+        }
+    }
+
     /**
      * Copies webapp webResources from the specified directory.
      * <p>
@@ -426,13 +498,18 @@ public abstract class AbstractHpiMojo extends AbstractJenkinsMojo {
      * @throws java.io.IOException if an error occurred while copying webResources
      */
     public void copyResources(File sourceDirectory, File webappDirectory) throws IOException {
+        copyResources(sourceDirectory, webappDirectory, WebappContentState.disabled(webappDirectory));
+    }
+
+    private void copyResources(File sourceDirectory, File webappDirectory, WebappContentState content)
+            throws IOException {
         if (!sourceDirectory.equals(webappDirectory)) {
             getLog().info("Copy webapp webResources to " + webappDirectory.getAbsolutePath());
             if (warSourceDirectory.exists()) {
-                String[] fileNames = getWarFiles(sourceDirectory);
+                String patterns = String.join(",", getIncludes()) + ";" + String.join(",", getExcludes());
+                String[] fileNames = content.scan(sourceDirectory, patterns, () -> getWarFiles(sourceDirectory));
                 for (String fileName : fileNames) {
-                    FileUtils.copyFileIfModified(
-                            new File(sourceDirectory, fileName), new File(webappDirectory, fileName));
+                    content.place(new File(sourceDirectory, fileName), new File(webappDirectory, fileName));
                 }
             }
         }
@@ -470,6 +547,11 @@ public abstract class AbstractHpiMojo extends AbstractJenkinsMojo {
      * @throws java.io.IOException if an error occurred while building the webapp
      */
     public void buildWebapp(MavenProject project, File webappDirectory) throws MojoExecutionException, IOException {
+        buildWebapp(project, webappDirectory, WebappContentState.disabled(webappDirectory));
+    }
+
+    private void buildWebapp(MavenProject project, File webappDirectory, WebappContentState content)
+            throws MojoExecutionException, IOException {
         getLog().info("Assembling webapp " + project.getArtifactId() + " in " + webappDirectory);
 
         File libDirectory = new File(webappDirectory, WEB_INF + "/lib");
@@ -486,10 +568,14 @@ public abstract class AbstractHpiMojo extends AbstractJenkinsMojo {
         List<File> dependentWarDirectories = new ArrayList<>();
 
         // List up IDs of Jenkins plugin dependencies
+        // (inspecting them may require building their POMs or opening their manifests, so do that concurrently)
+        List<MavenArtifact> candidates = new ArrayList<>(new TreeSet<>(Utils.unionOf(artifacts, dependencyArtifacts)));
+        List<Boolean> plugins = Utils.mapInParallel(candidates, getThreads(), a -> a.isPlugin(getLog()));
         Set<String> jenkinsPlugins = new HashSet<>();
         Set<String> excludedArtifacts = new HashSet<>();
-        for (MavenArtifact artifact : Utils.unionOf(artifacts, dependencyArtifacts)) {
-            if (artifact.isPlugin(getLog())) {
+        for (int i = 0; i < candidates.size(); i++) {
+            MavenArtifact artifact = candidates.get(i);
+            if (plugins.get(i)) {
                 jenkinsPlugins.add(artifact.getId());
             }
             // Exclude dependency if it comes from test or provided trail.
@@ -546,10 +632,10 @@ public abstract class AbstractHpiMojo extends AbstractJenkinsMojo {
                 actualBundledArtifacts.add(artifact.getArtifactId());
                 String type = artifact.getType();
                 if ("tld".equals(type)) {
-                    FileUtils.copyFileIfModified(artifact.getFile(), new File(tldDirectory, targetFileName));
+                    content.place(artifact.getFile(), new File(tldDirectory, targetFileName));
                 } else {
                     if ("jar".equals(type) || "ejb".equals(type) || "ejb-client".equals(type)) {
-                        FileUtils.copyFileIfModified(artifact.getFile(), new File(libDirectory, targetFileName));
+                        content.place(artifact.getFile(), new File(libDirectory, targetFileName));
                     } else {
                         if ("par".equals(type)) {
                             targetFileName = targetFileName.substring(0, targetFileName.lastIndexOf('.')) + ".jar";
@@ -557,7 +643,7 @@ public abstract class AbstractHpiMojo extends AbstractJenkinsMojo {
                             getLog().debug("Copying " + artifact.getFile() + " to "
                                     + new File(libDirectory, targetFileName));
 
-                            FileUtils.copyFileIfModified(artifact.getFile(), new File(libDirectory, targetFileName));
+                            content.place(artifact.getFile(), new File(libDirectory, targetFileName));
                         } else {
                             if ("war".equals(type)) {
                                 dependentWarDirectories.add(unpackWarToTempDirectory(artifact));
@@ -748,6 +834,10 @@ public abstract class AbstractHpiMojo extends AbstractJenkinsMojo {
             return null;
         }
 
+        return GitHead.of(session).resolve(project.getBasedir(), this::runGitRevParseHead);
+    }
+
+    private String runGitRevParseHead() {
         try {
             Process p = new ProcessBuilder("git", "rev-parse", "HEAD")
                     .directory(project.getBasedir())
@@ -781,25 +871,16 @@ public abstract class AbstractHpiMojo extends AbstractJenkinsMojo {
      */
     @CheckForNull
     protected Boolean isSupportDynamicLoading() throws IOException {
-        try (URLClassLoader cl = new URLClassLoader(
-                new URL[] {
-                    new File(project.getBuild().getOutputDirectory()).toURI().toURL()
-                },
-                getClass().getClassLoader())) {
-
-            EnumSet<YesNoMaybe> e = EnumSet.noneOf(YesNoMaybe.class);
-            for (IndexItem<Extension, Object> i : Index.load(Extension.class, Object.class, cl)) {
-                e.add(i.annotation().dynamicLoadable());
-            }
+        Set<YesNoMaybe> e =
+                ExtensionIndex.of(session).dynamicLoadability(new File(project.getBuild().getOutputDirectory()));
 
-            if (e.contains(YesNoMaybe.NO)) {
-                return Boolean.FALSE;
-            }
-            if (e.contains(YesNoMaybe.MAYBE)) {
-                return null;
-            }
-            return Boolean.TRUE;
+        if (e.contains(YesNoMaybe.NO)) {
+            return Boolean.FALSE;
+        }
+        if (e.contains(YesNoMaybe.MAYBE)) {
+            return null;
         }
+        return Boolean.TRUE;
     }
 
     /**
@@ -19,12 +19,11 @@ import edu.umd.cs.findbugs.annotations.CheckForNull;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
@@ -45,6 +44,7 @@ import org.apache.maven.project.MavenProject;
 import org.codehaus.plexus.archiver.jar.JarArchiver;
 import org.codehaus.plexus.archiver.jar.Manifest;
 import org.codehaus.plexus.archiver.jar.ManifestException;
+import org.jenkinsci.maven.plugins.hpi.util.Utils;
 
 /**
  * Abstract class for Mojo implementations, which produce Jenkins-style manifests.
@@ -75,6 +75,13 @@ public abstract class AbstractJenkinsManifestMojo extends AbstractHpiMojo {
     @Parameter(defaultValue = "${project.build.outputTimestamp}")
     private String outputTimestamp;
 
+    /**
+     * If true, the entries of the .jar and .hpi are deflated concurrently, one thread per processor.
+     * Entries are written in the same order either way, so the archives are identical.
+     */
+    @Parameter(property = "hpi.parallelCompression", defaultValue = "true")
+    protected boolean parallelCompression = true;
+
     /**
      * Optional - sandbox status of this plugin.
      */
@@ -90,6 +97,10 @@ public abstract class AbstractJenkinsManifestMojo extends AbstractHpiMojo {
     @Parameter
     protected String minimumJavaVersion;
 
+    String getOutputTimestamp() {
+        return outputTimestamp;
+    }
+
     /**
      * @return an instance of {@link MavenArchiver} preconfigured for reproducible builds
      *
@@ -103,6 +114,20 @@ public abstract class AbstractJenkinsManifestMojo extends AbstractHpiMojo {
         return mavenArchiver;
     }
 
+    /**
+     * @return {@code component}, unless {@link #parallelCompression} is disabled
+     *         in which case a {@link PluginJarArchiver} adding every entry serially
+     */
+    protected JarArchiver selectJarArchiver(JarArchiver component) {
+        return parallelCompression ? component : newPluginJarArchiver();
+    }
+
+    PluginJarArchiver newPluginJarArchiver() {
+        PluginJarArchiver archiver = new PluginJarArchiver();
+        archiver.setAddInParallel(parallelCompression);
+        return archiver;
+    }
+
     /**
      * Generates a manifest file to be included in the .hpi file
      */
@@ -122,8 +147,8 @@ public abstract class AbstractJenkinsManifestMojo extends AbstractHpiMojo {
         MavenArchiver ma = new MavenArchiver();
         ma.setOutputFile(manifestFile);
 
-        try (PrintWriter printWriter =
-                new PrintWriter(new OutputStreamWriter(new FileOutputStream(manifestFile), StandardCharsets.UTF_8))) {
+        StringWriter text = new StringWriter();
+        try (PrintWriter printWriter = new PrintWriter(text)) {
             ManifestConfiguration config = archive.getManifest();
             config.setAddDefaultSpecificationEntries(true);
             config.setAddDefaultImplementationEntries(true);
@@ -135,6 +160,14 @@ public abstract class AbstractJenkinsManifestMojo extends AbstractHpiMojo {
         } catch (ManifestException | IOException | DependencyResolutionRequiredException e) {
             throw new MojoExecutionException("Error preparing the manifest: " + e.getMessage(), e);
         }
+
+        // the manifest is part of the exploded webapp, where anything comparing modification times,
+        // like an archiver which is not forced, would take a rewritten manifest for a changed one
+        try {
+            Utils.writeIfChanged(manifestFile.toPath(), text.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new MojoExecutionException("Error writing the manifest: " + e.getMessage(), e);
+        }
     }
 
     protected void setAttributes(Manifest.ExistingSection mainSection)
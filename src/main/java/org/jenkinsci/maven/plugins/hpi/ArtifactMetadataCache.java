@@ -0,0 +1,80 @@
+package org.jenkinsci.maven.plugins.hpi;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.execution.MavenSession;
+
+/**
+ * Remembers what we learned about dependency artifacts during this {@link MavenSession}.
+ *
+ * <p>
+ * Finding out whether a {@code jar}-typed dependency is really a plugin requires building its POM,
+ * and the same artifacts are inspected over and over by different mojos and different modules.
+ * Artifacts are keyed by {@code groupId:artifactId:version[:classifier]}.
+ *
+ * @see MavenArtifact#isPlugin
+ */
+final class ArtifactMetadataCache {
+
+    private final Map<String, String> packagings = new ConcurrentHashMap<>();
+
+    private final Map<String, Boolean> plugins = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    static ArtifactMetadataCache of(MavenSession session) {
+        return SessionScoped.get(session, ArtifactMetadataCache.class, ArtifactMetadataCache::new);
+    }
+
+    static String keyOf(Artifact artifact) {
+        String key = artifact.getGroupId() + ':' + artifact.getArtifactId() + ':' + artifact.getBaseVersion();
+        if (artifact.getClassifier() != null && !artifact.getClassifier().isEmpty()) {
+            key += ':' + artifact.getClassifier();
+        }
+        return key;
+    }
+
+    /**
+     * @return the packaging declared in the POM of the artifact, or null if not known yet
+     */
+    String getPackaging(String key) {
+        return count(packagings.get(key));
+    }
+
+    void putPackaging(String key, String packaging) {
+        packagings.put(key, packaging);
+    }
+
+    /**
+     * @return whether the artifact is a plugin, or null if not known yet
+     */
+    Boolean isPlugin(String key) {
+        return count(plugins.get(key));
+    }
+
+    void putPlugin(String key, boolean plugin) {
+        plugins.put(key, plugin);
+    }
+
+    private <T> T count(T value) {
+        (value != null ? hits : misses).incrementAndGet();
+        return value;
+    }
+
+    long hits() {
+        return hits.get();
+    }
+
+    long misses() {
+        return misses.get();
+    }
+
+    @Override
+    public String toString() {
+        return "artifact metadata cache: " + hits + " hits, " + misses + " misses";
+    }
+}
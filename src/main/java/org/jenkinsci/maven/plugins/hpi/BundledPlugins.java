@@ -0,0 +1,214 @@
+package org.jenkinsci.maven.plugins.hpi;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarInputStream;
+import java.util.jar.Manifest;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.jenkinsci.maven.plugins.hpi.util.Utils;
+
+/**
+ * The version of Jenkins core and the plugins bundled in a WAR, as used by {@code overrideWar}.
+ *
+ * <p>
+ * Scanning means reading the manifest of every plugin in the WAR, which we do in parallel.
+ * The outcome is remembered, keyed by the SHA-256 checksum of the WAR,
+ * for the rest of the {@link MavenSession} and in the local repository,
+ * so that the plugin compatibility tester running the same WAR against many plugins only scans it once.
+ */
+final class BundledPlugins {
+
+    private static final Pattern CORE_REGEX = Pattern.compile(
+            "WEB-INF/lib/jenkins-core-([0-9.]+(?:-[0-9a-f.]+)*(?:-(?i)([a-z]+)(-)?([0-9a-f.]+)?)?(?:-(?i)([a-z]+)(-)?([0-9a-f_.]+)?)?(?:-SNAPSHOT)?)[.]jar");
+    private static final Pattern PLUGIN_REGEX = Pattern.compile("WEB-INF/plugins/([^/.]+)[.][hj]pi");
+
+    private static final String CORE = "core";
+    private static final String PLUGIN = "plugin:";
+
+    /**
+     * Version of {@code jenkins-core} in the WAR, if any.
+     */
+    @CheckForNull
+    final String coreVersion;
+
+    /**
+     * Versions of the bundled plugins, keyed by {@code groupId:artifactId}.
+     */
+    final Map<String, String> plugins;
+
+    private BundledPlugins(@CheckForNull String coreVersion, Map<String, String> plugins) {
+        this.coreVersion = coreVersion;
+        this.plugins = Collections.unmodifiableMap(plugins);
+    }
+
+    /**
+     * What we remember for the rest of the session.
+     */
+    private static final class Cache {
+        /**
+         * Checksums of WARs, keyed by path, size and modification time.
+         */
+        final Map<String, String> checksums = new ConcurrentHashMap<>();
+
+        final Map<String, BundledPlugins> scans = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Computes the SHA-256 checksum of a WAR, once per session.
+     */
+    static String checksum(MavenSession session, File war) throws IOException {
+        Cache cache = SessionScoped.get(session, Cache.class, Cache::new);
+        String key = war.getAbsolutePath() + " " + war.length() + " " + war.lastModified();
+        String checksum = cache.checksums.get(key);
+        if (checksum == null) {
+            checksum = Utils.sha256(war.toPath());
+            cache.checksums.put(key, checksum);
+        }
+        return checksum;
+    }
+
+    /**
+     * Scans a WAR, unless a WAR with the same checksum was scanned before.
+     *
+     * @param threads number of plugin manifests to read concurrently
+     */
+    static BundledPlugins of(MavenSession session, File war, int threads, Log log)
+            throws IOException, MojoExecutionException {
+        Cache cache = SessionScoped.get(session, Cache.class, Cache::new);
+        String checksum = checksum(session, war);
+        BundledPlugins result = cache.scans.get(checksum);
+        if (result != null) {
+            return result;
+        }
+        Path stored = session.getRepositorySession()
+                .getLocalRepository()
+                .getBasedir()
+                .toPath()
+                .resolve(".cache/maven-hpi-plugin/bundled-plugins/" + checksum + ".properties");
+        result = load(stored);
+        if (result == null) {
+            result = scan(war, threads);
+            try {
+                store(result, stored);
+            } catch (IOException x) {
+                // e.g. a read-only local repository; we will just scan it again next time
+                log.debug("Failed to remember the plugins bundled in " + war + " in " + stored, x);
+            }
+        }
+        cache.scans.put(checksum, result);
+        return result;
+    }
+
+    static BundledPlugins scan(File war, int threads) throws IOException, MojoExecutionException {
+        try (JarFile jf = new JarFile(war)) {
+            String coreVersion = null;
+            List<JarEntry> entries = new ArrayList<>();
+            Enumeration<JarEntry> e = jf.entries();
+            while (e.hasMoreElements()) {
+                JarEntry entry = e.nextElement();
+                String name = entry.getName();
+                if (!name.startsWith("WEB-INF/")) {
+                    continue;
+                }
+                Matcher m = CORE_REGEX.matcher(name);
+                if (m.matches()) {
+                    if (coreVersion != null) {
+                        throw new MojoExecutionException("More than 1 jenkins-core JAR in " + war);
+                    }
+                    coreVersion = m.group(1);
+                } else if (PLUGIN_REGEX.matcher(name).matches()) {
+                    entries.add(entry);
+                }
+            }
+            // ZipFile is thread safe, and inflating nested plugins is where the time goes
+            List<String[]> read = Utils.mapInParallel(entries, threads, entry -> readPlugin(jf, entry));
+            Map<String, String> plugins = new TreeMap<>();
+            for (String[] plugin : read) {
+                plugins.put(plugin[0], plugin[1]);
+            }
+            return new BundledPlugins(coreVersion, plugins);
+        }
+    }
+
+    /**
+     * @return {@code groupId:artifactId} and version
+     */
+    private static String[] readPlugin(JarFile jf, JarEntry entry) throws IOException {
+        String name = entry.getName();
+        try (InputStream is = jf.getInputStream(entry);
+                JarInputStream jis = new JarInputStream(is)) {
+            Manifest manifest = jis.getManifest();
+            if (manifest == null) {
+                throw new IllegalArgumentException("No manifest in " + name);
+            }
+            Attributes attributes = manifest.getMainAttributes();
+            String groupId = attributes.getValue("Group-Id");
+            if (groupId == null) {
+                throw new IllegalArgumentException("Failed to determine group ID for " + name);
+            }
+            String artifactId = attributes.getValue("Short-Name");
+            if (artifactId == null) {
+                throw new IllegalArgumentException("Failed to determine artifact ID for " + name);
+            }
+            String version = attributes.getValue("Plugin-Version");
+            if (version == null) {
+                throw new IllegalArgumentException("Failed to determine version for " + name);
+            }
+            // handle any extra info in snapshots e.g. " (private-abcd1234-username)"
+            version = version.replaceFirst(" [(].+[)]$", "");
+            return new String[] {String.format("%s:%s", groupId, artifactId), version};
+        }
+    }
+
+    @CheckForNull
+    static BundledPlugins load(Path stored) {
+        Properties properties = new Properties();
+        try (InputStream is = Files.newInputStream(stored)) {
+            properties.load(is);
+        } catch (NoSuchFileException x) {
+            return null;
+        } catch (IOException | IllegalArgumentException x) {
+            // scan again and overwrite it
+            return null;
+        }
+        Map<String, String> plugins = new TreeMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            if (key.startsWith(PLUGIN)) {
+                plugins.put(key.substring(PLUGIN.length()), properties.getProperty(key));
+            }
+        }
+        return new BundledPlugins(properties.getProperty(CORE), plugins);
+    }
+
+    static void store(BundledPlugins result, Path stored) throws IOException {
+        Properties properties = new Properties();
+        if (result.coreVersion != null) {
+            properties.setProperty(CORE, result.coreVersion);
+        }
+        for (Map.Entry<String, String> plugin : result.plugins.entrySet()) {
+            properties.setProperty(PLUGIN + plugin.getKey(), plugin.getValue());
+        }
+        // several builds may be scanning the same WAR at once
+        Utils.writeAtomically(stored, os -> properties.store(os, "plugins bundled in a WAR"));
+    }
+}
@@ -0,0 +1,189 @@
+package org.jenkinsci.maven.plugins.hpi;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Watches directory trees for changes, reporting bursts of changes, such as a compilation, as one.
+ *
+ * <p>
+ * Directories created inside the watched trees are watched as well.
+ * A root which does not exist, or is deleted, such as {@code target/classes} after {@code mvn clean},
+ * is watched for through the nearest directory above it which exists, and its whole tree is reported as changed
+ * once it appears.
+ */
+final class DirectoryWatcher implements Closeable {
+
+    private final WatchService watchService;
+
+    private final List<Path> roots;
+
+    /**
+     * Directories of the watched trees.
+     */
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+
+    /**
+     * Directories above missing roots, only watched for the roots to appear.
+     */
+    private final Map<WatchKey, Path> ancestors = new HashMap<>();
+
+    private final Predicate<Path> relevant;
+
+    /**
+     * @param relevant decides which changed files count as changes
+     */
+    DirectoryWatcher(List<Path> roots, Predicate<Path> relevant) throws IOException {
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.roots = List.copyOf(roots);
+        this.relevant = relevant;
+        // what is there to begin with is not a change
+        watchRoots(new TreeSet<>());
+    }
+
+    /**
+     * Watches the roots which are not watched yet: their trees if they exist,
+     * and otherwise the nearest existing directories above them.
+     *
+     * @param changes where to add the files of trees which appeared
+     */
+    private void watchRoots(Set<Path> changes) {
+        Set<Path> needed = new HashSet<>();
+        for (Path root : roots) {
+            if (directories.containsValue(root)) {
+                continue;
+            }
+            if (Files.isDirectory(root)) {
+                try {
+                    registerTree(root, changes);
+                    continue;
+                } catch (IOException x) {
+                    // deleted again already, so watch for it to appear once more
+                }
+            }
+            Path ancestor = root.getParent();
+            while (ancestor != null && !Files.isDirectory(ancestor)) {
+                ancestor = ancestor.getParent();
+            }
+            // a directory of another tree is watched for creations already
+            if (ancestor != null && !directories.containsValue(ancestor)) {
+                needed.add(ancestor);
+            }
+        }
+        ancestors.entrySet().removeIf(e -> {
+            if (needed.contains(e.getValue())) {
+                return false;
+            }
+            // registering it as part of a tree since then returned the same key
+            if (!directories.containsKey(e.getKey())) {
+                e.getKey().cancel();
+            }
+            return true;
+        });
+        for (Path ancestor : needed) {
+            if (!ancestors.containsValue(ancestor)) {
+                try {
+                    ancestors.put(ancestor.register(watchService, StandardWatchEventKinds.ENTRY_CREATE), ancestor);
+                } catch (IOException x) {
+                    // deleted meanwhile; the next change in a watched directory makes us look again
+                }
+            }
+        }
+    }
+
+    /**
+     * Watches a directory tree.
+     *
+     * @param changes where to add the relevant files already in the tree, which may have been created
+     *     before it was watched
+     */
+    private void registerTree(Path root, Set<Path> changes) throws IOException {
+        try (Stream<Path> tree = Files.walk(root)) {
+            for (Path p : (Iterable<Path>) tree::iterator) {
+                if (Files.isDirectory(p)) {
+                    WatchKey key = p.register(
+                            watchService,
+                            StandardWatchEventKinds.ENTRY_CREATE,
+                            StandardWatchEventKinds.ENTRY_DELETE,
+                            StandardWatchEventKinds.ENTRY_MODIFY);
+                    directories.put(key, p);
+                } else if (relevant.test(p)) {
+                    changes.add(p);
+                }
+            }
+        } catch (UncheckedIOException x) {
+            throw x.getCause();
+        }
+    }
+
+    /**
+     * Waits for changes, and then for the watched trees to be quiet for a while.
+     *
+     * @param timeout how long to wait for a first change, in milliseconds
+     * @param quietPeriod how long no further change must happen, in milliseconds
+     * @return the changed files, empty if nothing changed before the timeout
+     */
+    Set<Path> awaitChanges(long timeout, long quietPeriod) throws InterruptedException {
+        Set<Path> changes = new TreeSet<>();
+        WatchKey key = watchService.poll(timeout, TimeUnit.MILLISECONDS);
+        while (key != null) {
+            collect(key, changes);
+            key = watchService.poll(quietPeriod, TimeUnit.MILLISECONDS);
+        }
+        return changes;
+    }
+
+    private void collect(WatchKey key, Set<Path> changes) {
+        Path dir = directories.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (dir == null) {
+                // a missing root or a directory leading to it may have appeared, which watchRoots checks below
+                continue;
+            }
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                // we lost track of what changed, but something did
+                changes.add(dir);
+                continue;
+            }
+            Path changed = dir.resolve((Path) event.context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(changed)) {
+                try {
+                    registerTree(changed, changes);
+                } catch (IOException x) {
+                    // deleted again already
+                    changes.add(changed);
+                }
+            } else if (relevant.test(changed)) {
+                changes.add(changed);
+            }
+        }
+        if (!key.reset()) {
+            // the directory is gone, possibly a root
+            directories.remove(key);
+            ancestors.remove(key);
+        }
+        watchRoots(changes);
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+}
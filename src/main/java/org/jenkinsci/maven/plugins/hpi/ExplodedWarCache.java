@@ -0,0 +1,106 @@
+package org.jenkinsci.maven.plugins.hpi;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileLock;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.logging.Log;
+import org.jenkinsci.maven.plugins.hpi.util.Utils;
+
+/**
+ * A directory to explode a WAR into, one per WAR checksum, shared by every launch of that WAR.
+ *
+ * <p>
+ * Winstone deletes and explodes the directory again when the WAR is newer than its contents,
+ * so a launch holds a lock on the directory for as long as Jenkins runs, and other launches do not use it meanwhile.
+ * Only the {@link #KEPT} most recently used directories are kept; the others are deleted unless they are in use.
+ * The empty lock files themselves are never deleted, as that would let two launches lock the same directory.
+ */
+final class ExplodedWarCache implements Closeable {
+
+    /**
+     * How many exploded WARs to keep.
+     */
+    static final int KEPT = 3;
+
+    private static final String LOCK = ".lock";
+
+    private final Path directory;
+
+    private final FileLock lock;
+
+    private ExplodedWarCache(Path directory, FileLock lock) {
+        this.directory = directory;
+        this.lock = lock;
+    }
+
+    /**
+     * Locks the directory for a WAR, and deletes directories for other WARs which were not used lately.
+     *
+     * @param root the directory holding exploded WARs
+     * @return null if another launch is using the directory
+     */
+    @CheckForNull
+    static ExplodedWarCache lock(Path root, String checksum, Log log) throws IOException {
+        Files.createDirectories(root);
+        Path lockFile = root.resolve(checksum + LOCK);
+        FileLock lock = Utils.tryLock(lockFile);
+        if (lock == null) {
+            return null;
+        }
+        // tells when it was last used
+        Files.setLastModifiedTime(lockFile, FileTime.from(Instant.now()));
+        prune(root, checksum, log);
+        return new ExplodedWarCache(root.resolve(checksum), lock);
+    }
+
+    Path directory() {
+        return directory;
+    }
+
+    private static void prune(Path root, String checksum, Log log) throws IOException {
+        Map<Path, FileTime> lastUsed = new HashMap<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(root)) {
+            for (Path entry : entries) {
+                if (Files.isDirectory(entry) && !entry.getFileName().toString().equals(checksum)) {
+                    Path lockFile = root.resolve(entry.getFileName() + LOCK);
+                    lastUsed.put(entry, Files.getLastModifiedTime(Files.exists(lockFile) ? lockFile : entry));
+                }
+            }
+        }
+        List<Path> others = new ArrayList<>(lastUsed.keySet());
+        others.sort(Comparator.comparing(lastUsed::get, Comparator.reverseOrder()));
+        for (Path stale : others.subList(Math.min(KEPT - 1, others.size()), others.size())) {
+            FileLock lock = Utils.tryLock(root.resolve(stale.getFileName() + LOCK));
+            if (lock == null) {
+                log.debug("Not deleting exploded WAR " + stale + " as it is in use");
+                continue;
+            }
+            try {
+                log.debug("Deleting exploded WAR " + stale);
+                FileUtils.deleteDirectory(stale.toFile());
+            } finally {
+                lock.channel().close();
+            }
+        }
+    }
+
+    /**
+     * Lets other launches use the directory.
+     */
+    @Override
+    public void close() throws IOException {
+        lock.channel().close();
+    }
+}
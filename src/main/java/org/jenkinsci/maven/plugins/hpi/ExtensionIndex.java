@@ -0,0 +1,87 @@
+package org.jenkinsci.maven.plugins.hpi;
+
+import hudson.Extension;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import jenkins.YesNoMaybe;
+import net.java.sezpoz.impl.SerAnnotatedElement;
+import net.java.sezpoz.impl.SerEnumConst;
+import org.apache.maven.execution.MavenSession;
+import org.jenkinsci.maven.plugins.hpi.util.Utils;
+
+/**
+ * Reads the {@code dynamicLoadable} values of {@link Extension}s straight from the SezPoz index.
+ *
+ * <p>
+ * {@code Index.load} needs a class loader over the classes directory and creates annotation proxies,
+ * which loads classes and leaves them behind in long-lived Maven processes.
+ * The index is merely a serialized list of {@link SerAnnotatedElement}s, terminated by {@code null},
+ * whose values only refer to enum constants by name, so we deserialize it ourselves.
+ * Results are remembered for the rest of the {@link MavenSession}, keyed by the digest of the index.
+ */
+final class ExtensionIndex {
+
+    /**
+     * Only lets through what SezPoz writes to an index.
+     */
+    private static final ObjectInputFilter FILTER =
+            ObjectInputFilter.Config.createFilter("net.java.sezpoz.impl.*;java.lang.*;java.util.*;!*");
+
+    private final Map<String, Set<YesNoMaybe>> loadabilities = new ConcurrentHashMap<>();
+
+    static ExtensionIndex of(MavenSession session) {
+        return SessionScoped.get(session, ExtensionIndex.class, ExtensionIndex::new);
+    }
+
+    /**
+     * Lists the {@code dynamicLoadable} values of the extensions indexed in a classes directory.
+     *
+     * @return an empty set if there are no extensions
+     */
+    Set<YesNoMaybe> dynamicLoadability(File classesDirectory) throws IOException {
+        File index = new File(classesDirectory, "META-INF/annotations/" + Extension.class.getName());
+        byte[] data;
+        try {
+            data = Files.readAllBytes(index.toPath());
+        } catch (NoSuchFileException x) {
+            return Collections.emptySet();
+        }
+        String key = Utils.sha256(data);
+        Set<YesNoMaybe> result = loadabilities.get(key);
+        if (result == null) {
+            result = Collections.unmodifiableSet(read(data));
+            loadabilities.put(key, result);
+        }
+        return result;
+    }
+
+    static EnumSet<YesNoMaybe> read(byte[] data) throws IOException {
+        EnumSet<YesNoMaybe> result = EnumSet.noneOf(YesNoMaybe.class);
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(data))) {
+            ois.setObjectInputFilter(FILTER);
+            Object o;
+            while ((o = ois.readObject()) != null) {
+                Object value = ((SerAnnotatedElement) o).values.get("dynamicLoadable");
+                if (value == null) {
+                    // the default of Extension.dynamicLoadable()
+                    result.add(YesNoMaybe.MAYBE);
+                } else {
+                    result.add(YesNoMaybe.valueOf(((SerEnumConst) value).constName));
+                }
+            }
+        } catch (ClassNotFoundException | ClassCastException | IllegalArgumentException x) {
+            throw new IOException("Malformed SezPoz index", x);
+        }
+        return result;
+    }
+}
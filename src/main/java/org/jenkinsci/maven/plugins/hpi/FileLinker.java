@@ -0,0 +1,128 @@
+package org.jenkinsci.maven.plugins.hpi;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Makes files available under another name as cheaply as possible.
+ *
+ * <p>
+ * When linking, we first try a hard link, then a copy-on-write clone (reflink) through {@code cp},
+ * and finally fall back to copying.
+ * A technique which failed once, typically because source and target are on different file systems
+ * or the file system does not support it, is not tried again by the same instance.
+ *
+ * <p>
+ * A target which is already there with the size and modification time of its source is left alone.
+ * Otherwise the target is deleted before being recreated, never written to,
+ * since it may be a hard link to a file in the local repository.
+ *
+ * <p>
+ * An instance may be used by several threads at once.
+ */
+final class FileLinker {
+
+    private final Log log;
+
+    private volatile boolean hardLinks;
+
+    private volatile boolean reflinks;
+
+    private final AtomicInteger linked = new AtomicInteger();
+    private final AtomicInteger cloned = new AtomicInteger();
+    private final AtomicInteger copied = new AtomicInteger();
+    private final AtomicInteger upToDate = new AtomicInteger();
+
+    /**
+     * @param link whether to try linking and cloning before copying
+     */
+    FileLinker(boolean link, Log log) {
+        this.log = log;
+        this.hardLinks = link;
+        this.reflinks = link && !System.getProperty("os.name").toLowerCase(Locale.ENGLISH).startsWith("windows");
+    }
+
+    /**
+     * Whether the target was placed from the source and left alone since.
+     */
+    static boolean isUpToDate(Path source, Path target) throws IOException {
+        return Files.isRegularFile(target)
+                && Files.size(target) == Files.size(source)
+                && Files.getLastModifiedTime(target).equals(Files.getLastModifiedTime(source));
+    }
+
+    void place(Path source, Path target) throws IOException {
+        if (isUpToDate(source, target)) {
+            upToDate.incrementAndGet();
+            return;
+        }
+        Files.createDirectories(target.getParent());
+        Files.deleteIfExists(target);
+        if (hardLinks) {
+            try {
+                Files.createLink(target, source);
+                linked.incrementAndGet();
+                return;
+            } catch (UnsupportedOperationException | FileSystemException x) {
+                log.debug("Cannot hard link " + source + " to " + target + ", not trying again", x);
+                hardLinks = false;
+            }
+        }
+        if (reflinks) {
+            if (reflink(source, target)) {
+                cloned.incrementAndGet();
+                return;
+            }
+            log.debug("Cannot clone " + source + " to " + target + ", not trying again");
+            reflinks = false;
+            Files.deleteIfExists(target);
+        }
+        Files.copy(source, target, StandardCopyOption.COPY_ATTRIBUTES);
+        copied.incrementAndGet();
+    }
+
+    private static boolean reflink(Path source, Path target) {
+        boolean mac = System.getProperty("os.name").toLowerCase(Locale.ENGLISH).startsWith("mac");
+        List<String> command = mac
+                ? List.of("cp", "-c", "-p", source.toString(), target.toString())
+                : List.of("cp", "--reflink=always", "--preserve=timestamps", source.toString(), target.toString());
+        try {
+            Process p = new ProcessBuilder(command).redirectErrorStream(true).start();
+            p.getOutputStream().close();
+            try (InputStream is = p.getInputStream()) {
+                is.transferTo(OutputStream.nullOutputStream());
+            }
+            return p.waitFor() == 0 && Files.isRegularFile(target);
+        } catch (IOException x) {
+            return false;
+        } catch (InterruptedException x) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Reports how targets were placed so far.
+     */
+    void report(TimingReport report) {
+        report.count("linked", linked.get());
+        report.count("cloned", cloned.get());
+        report.count("copied", copied.get());
+        report.count("upToDate", upToDate.get());
+    }
+
+    @Override
+    public String toString() {
+        return linked.get() + " linked, " + cloned.get() + " cloned, " + copied.get() + " copied, " + upToDate.get()
+                + " up to date";
+    }
+}
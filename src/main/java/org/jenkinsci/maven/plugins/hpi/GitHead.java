@@ -0,0 +1,168 @@
+package org.jenkinsci.maven.plugins.hpi;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import org.apache.maven.execution.MavenSession;
+
+/**
+ * Finds out which commit is checked out in a Git working tree, by reading the repository directly.
+ *
+ * <p>
+ * We understand regular repositories, linked worktrees and submodules (where {@code .git} is a file
+ * pointing to the actual Git directory), symbolic and detached {@code HEAD}, as well as loose and packed refs.
+ * Anything else, such as the reftable format, is left to a fallback, typically running {@code git rev-parse HEAD}.
+ * Results are remembered for the rest of the {@link MavenSession}, keyed by Git directory,
+ * so all the modules of a repository share one lookup, or by working directory when the fallback was used.
+ */
+final class GitHead {
+
+    private static final Pattern OBJECT_ID = Pattern.compile("[0-9a-f]{40}([0-9a-f]{24})?");
+
+    private static final String REF_PREFIX = "ref: ";
+
+    private final Map<Path, Optional<String>> heads = new ConcurrentHashMap<>();
+
+    static GitHead of(MavenSession session) {
+        return SessionScoped.get(session, GitHead.class, GitHead::new);
+    }
+
+    /**
+     * Resolves {@code HEAD} of the working tree containing a directory.
+     *
+     * @param fallback used when the repository is not found or not understood; may return null
+     * @return the object ID of the commit, or null if there is none
+     */
+    @CheckForNull
+    String resolve(File directory, Supplier<String> fallback) {
+        Path dir = directory.toPath().toAbsolutePath();
+        Path gitDir;
+        try {
+            gitDir = findGitDir(dir);
+        } catch (IOException x) {
+            gitDir = null;
+        }
+        if (gitDir == null) {
+            return heads.computeIfAbsent(dir, d -> Optional.ofNullable(fallback.get())).orElse(null);
+        }
+        return heads.computeIfAbsent(gitDir, d -> {
+                    try {
+                        return Optional.ofNullable(readHead(d));
+                    } catch (UnsupportedRepositoryException | IOException x) {
+                        return Optional.ofNullable(fallback.get());
+                    }
+                })
+                .orElse(null);
+    }
+
+    /**
+     * Finds the Git directory of the working tree containing a directory, following {@code gitdir:} links.
+     */
+    @CheckForNull
+    static Path findGitDir(Path directory) throws IOException {
+        for (Path d = directory; d != null; d = d.getParent()) {
+            Path dotGit = d.resolve(".git");
+            if (Files.isDirectory(dotGit)) {
+                return dotGit;
+            }
+            if (Files.isRegularFile(dotGit)) {
+                String link = firstLine(dotGit);
+                if (link == null || !link.startsWith("gitdir:")) {
+                    return null;
+                }
+                return d.resolve(link.substring("gitdir:".length()).trim()).normalize();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads {@code HEAD} of a Git directory.
+     *
+     * @return the object ID, or null on an unborn branch
+     * @throws UnsupportedRepositoryException if the repository layout is not understood
+     */
+    @CheckForNull
+    static String readHead(Path gitDir) throws IOException, UnsupportedRepositoryException {
+        // linked worktrees keep HEAD to themselves but share refs with the main repository
+        Path commonDir = gitDir;
+        String common = firstLine(gitDir.resolve("commondir"));
+        if (common != null) {
+            commonDir = gitDir.resolve(common).normalize();
+        }
+        if (Files.isDirectory(commonDir.resolve("reftable"))) {
+            throw new UnsupportedRepositoryException("reftable");
+        }
+        String head = firstLine(gitDir.resolve("HEAD"));
+        for (int depth = 0; head != null && head.startsWith(REF_PREFIX); depth++) {
+            if (depth > 5) {
+                throw new UnsupportedRepositoryException("symbolic ref loop");
+            }
+            String ref = head.substring(REF_PREFIX.length()).trim();
+            head = firstLine(gitDir.resolve(ref));
+            if (head == null && !commonDir.equals(gitDir)) {
+                head = firstLine(commonDir.resolve(ref));
+            }
+            if (head == null) {
+                head = packedRef(commonDir, ref);
+            }
+        }
+        if (head == null) {
+            return null;
+        }
+        if (!OBJECT_ID.matcher(head).matches()) {
+            throw new UnsupportedRepositoryException("not an object ID: " + head);
+        }
+        return head;
+    }
+
+    @CheckForNull
+    private static String packedRef(Path commonDir, String ref) throws IOException {
+        try (BufferedReader r = Files.newBufferedReader(commonDir.resolve("packed-refs"), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = r.readLine()) != null) {
+                // skip the header and peeled tags
+                if (line.startsWith("#") || line.startsWith("^")) {
+                    continue;
+                }
+                int space = line.indexOf(' ');
+                if (space > 0 && line.substring(space + 1).equals(ref)) {
+                    return line.substring(0, space);
+                }
+            }
+        } catch (NoSuchFileException x) {
+            // nothing packed
+        }
+        return null;
+    }
+
+    @CheckForNull
+    private static String firstLine(Path file) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (BufferedReader r = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line = r.readLine();
+            return line != null ? line.trim() : null;
+        }
+    }
+
+    /**
+     * Thrown when a Git directory cannot be read in-process, so that the fallback should be used instead.
+     */
+    static final class UnsupportedRepositoryException extends Exception {
+        UnsupportedRepositoryException(String message) {
+            super(message);
+        }
+    }
+}
@@ -16,13 +16,25 @@ package org.jenkinsci.maven.plugins.hpi;
  * limitations under the License.
  */
 
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import java.io.File;
 import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+import org.apache.maven.archiver.ManifestSection;
 import org.apache.maven.archiver.MavenArchiveConfiguration;
 import org.apache.maven.archiver.MavenArchiver;
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.artifact.DependencyResolutionRequiredException;
+import org.apache.maven.model.io.xpp3.MavenXpp3Writer;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.Component;
@@ -35,6 +47,9 @@ import org.codehaus.plexus.archiver.ArchiverException;
 import org.codehaus.plexus.archiver.jar.JarArchiver;
 import org.codehaus.plexus.archiver.jar.Manifest;
 import org.codehaus.plexus.archiver.jar.ManifestException;
+import org.codehaus.plexus.components.io.resources.ResourceFactory;
+import org.codehaus.plexus.util.DirectoryScanner;
+import org.codehaus.plexus.util.StringUtils;
 
 /**
  * Build a war/webapp.
@@ -76,6 +91,48 @@ public class HpiMojo extends AbstractJenkinsManifestMojo {
     @Parameter
     private MavenArchiveConfiguration archive = new MavenArchiveConfiguration();
 
+    /**
+     * If true, dependencies, the plugin jar and the contents of {@code warSourceDirectory} are written
+     * to the .hpi straight from where they are, instead of being copied into the webapp directory first.
+     * The webapp directory then only holds generated files such as the manifest and filtered web resources.
+     * The resulting .hpi is the same either way.
+     * Only takes effect in reproducible builds, that is when {@code project.build.outputTimestamp} is set,
+     * since the order of entries copied into the webapp directory otherwise depends on the file system.
+     */
+    @Parameter(property = "hpi.streamWebapp", defaultValue = "false")
+    private boolean streamWebapp;
+
+    /**
+     * If true, entries of the .hpi matching {@link #storedEntryIncludes} are stored without compression.
+     * Nested jars and most binary assets are compressed already, so deflating them again gains next to nothing.
+     */
+    @Parameter(property = "hpi.storeCompressedEntries", defaultValue = "false")
+    private boolean storeCompressedEntries;
+
+    /**
+     * The comma separated list of patterns of .hpi entries to store without compression
+     * when {@link #storeCompressedEntries} is enabled. Patterns are matched case-insensitively.
+     */
+    @Parameter(
+            property = "hpi.storedEntryIncludes",
+            defaultValue = "**/*.jar,**/*.zip,**/*.gz,**/*.tgz,**/*.bz2,**/*.xz,"
+                    + "**/*.png,**/*.gif,**/*.jpg,**/*.jpeg,**/*.webp,**/*.ico,**/*.woff,**/*.woff2")
+    private String storedEntryIncludes;
+
+    /**
+     * The comma separated list of patterns of .hpi entries to compress
+     * even though they match {@link #storedEntryIncludes}.
+     */
+    @Parameter(property = "hpi.storedEntryExcludes")
+    private String storedEntryExcludes;
+
+    /**
+     * If true, the .jar and .hpi are built again even if nothing they are built from changed since the last build:
+     * the manifest, the classes, the web resources, the dependencies and the configuration of this goal.
+     */
+    @Parameter(property = "hpi.forceCreation", defaultValue = "false")
+    private boolean forceCreation;
+
     // ----------------------------------------------------------------------
     // Implementation
     // ----------------------------------------------------------------------
@@ -130,10 +187,28 @@ public class HpiMojo extends AbstractJenkinsManifestMojo {
                 break;
             }
         }
+
+        File hpiFile = getOutputFile(".hpi");
+        File[] outputs = jarFile == null ? new File[] {getOutputFile(".jar"), hpiFile} : new File[] {hpiFile};
+        File stateFile = new File(
+                project.getBuild().getDirectory(), "maven-status/maven-hpi-plugin/hpi/" + hpiName + ".properties");
+        PackagingFingerprint fingerprint = fingerprint(manifestFile, jarFile);
+        if (!forceCreation) {
+            List<String> changes = fingerprint.changesSince(stateFile, outputs);
+            if (changes.isEmpty()) {
+                getLog().info("Skipping packaging as " + hpiFile.getName() + " is up to date");
+                projectHelper.attachArtifact(project, "jar", null, jarFile != null ? jarFile : outputs[0]);
+                project.getArtifact().setFile(hpiFile);
+                return;
+            }
+            getLog().info("Packaging " + hpiFile.getName() + " as " + String.join(", ", changes));
+        }
+
         if (jarFile == null) {
             // create a jar file to be used when other plugins depend on this plugin.
             jarFile = getOutputFile(".jar");
             getLog().info("Generating jar " + jarFile.getAbsolutePath());
+            JarArchiver jarArchiver = selectJarArchiver(this.jarArchiver);
             MavenArchiver archiver = newMavenArchiver(jarArchiver, jarFile);
             jarArchiver.addConfiguredManifest(manifest);
             File indexJelly = new File(getClassesDirectory(), "index.jelly");
@@ -157,19 +232,148 @@ public class HpiMojo extends AbstractJenkinsManifestMojo {
         // that gets fixed then this will make sense)
         projectHelper.attachArtifact(project, "jar", null, jarFile);
 
+        boolean stream = streamWebapp;
+        if (stream && MavenArchiver.parseBuildOutputTimestamp(getOutputTimestamp()).isEmpty()) {
+            getLog().warn("Not streaming webapp content into the .hpi as reproducible builds are disabled;"
+                    + " set project.build.outputTimestamp to stream it");
+            stream = false;
+        }
+
         // generate war file
-        buildExplodedWebapp(getWebappDirectory(), jarFile);
+        WebappContentState content = assembleWebapp(getWebappDirectory(), jarFile, stream);
 
-        File hpiFile = getOutputFile(".hpi");
         getLog().info("Generating hpi " + hpiFile.getAbsolutePath());
 
+        JarArchiver hpiArchiver = selectJarArchiver(this.hpiArchiver);
+        if (storeCompressedEntries) {
+            PluginJarArchiver storingArchiver = newPluginJarArchiver();
+            storingArchiver.setStoredEntries(
+                    StringUtils.split(Objects.toString(storedEntryIncludes, ""), ","),
+                    StringUtils.split(Objects.toString(storedEntryExcludes, ""), ","));
+            hpiArchiver = storingArchiver;
+        }
         MavenArchiver archiver = newMavenArchiver(hpiArchiver, hpiFile);
 
         hpiArchiver.addConfiguredManifest(manifest);
-        hpiArchiver.addDirectory(getWebappDirectory(), getIncludes(), getExcludes());
+        if (stream) {
+            addWebapp(hpiArchiver, getWebappDirectory(), content.streamed());
+        } else {
+            hpiArchiver.addDirectory(getWebappDirectory(), getIncludes(), getExcludes());
+        }
 
         // create archive
         archiver.createArchive(session, project, archive);
         project.getArtifact().setFile(hpiFile);
+        fingerprint.save(stateFile, outputs);
+    }
+
+    /**
+     * Summarizes what the .jar and .hpi are built from.
+     *
+     * @param jarFile the attached jar to bundle, or null if one is to be built from the classes directory
+     */
+    private PackagingFingerprint fingerprint(File manifestFile, @CheckForNull File jarFile) throws IOException {
+        PackagingFingerprint fingerprint = new PackagingFingerprint();
+        fingerprint.value("manifest", Files.readString(manifestFile.toPath(), StandardCharsets.UTF_8));
+        if (jarFile == null) {
+            fingerprint.tree("classes", getClassesDirectory());
+        } else {
+            fingerprint.file("jar", jarFile);
+        }
+        fingerprintWebapp(fingerprint);
+        fingerprint.file("configuration", project.getFile());
+        // the effective model, which includes whatever is inherited from parents and interpolated
+        StringWriter model = new StringWriter();
+        new MavenXpp3Writer().write(model, project.getModel());
+        fingerprint.value("configuration", model.toString());
+        // applied by MavenArchiver on top of the manifest we generated
+        fingerprint.value(
+                "configuration",
+                archive.isCompress() + " " + archive.isForced() + " " + archive.isAddMavenDescriptor() + " "
+                        + new TreeMap<>(archive.getManifestEntries()));
+        for (ManifestSection section : archive.getManifestSections()) {
+            fingerprint.value("configuration", section.getName() + " " + new TreeMap<>(section.getManifestEntries()));
+        }
+        fingerprint.contents("configuration", archive.getManifestFile());
+        fingerprint.contents("configuration", archive.getPomPropertiesFile());
+        fingerprint.value("configuration", hpiName + " " + jarClassifier + " " + getOutputTimestamp());
+        fingerprint.value(
+                "configuration",
+                streamWebapp + " " + storeCompressedEntries + " " + storedEntryIncludes + " " + storedEntryExcludes);
+        return fingerprint;
+    }
+
+    /**
+     * Adds the webapp directory to the .hpi archiver along with the files which were not copied into it,
+     * producing the same entries in the same order as {@code addDirectory} would have had they been copied.
+     *
+     * <p>
+     * {@code addDirectory} lists all directories and then all files, each in the order of a depth-first scan,
+     * which with the filename comparator set by {@code configureReproducibleBuild} visits entries by name.
+     * Without it, the scan follows the order of the file system, so this must only be used in reproducible builds.
+     *
+     * @param streamed files keyed by their {@code /}-separated path in the webapp
+     */
+    private void addWebapp(JarArchiver hpiArchiver, File webappDirectory, Map<String, File> streamed)
+            throws IOException {
+        for (String name : streamed.keySet()) {
+            // so that the directories are listed as if the files were there
+            Files.createDirectories(new File(webappDirectory, name).toPath().getParent());
+        }
+
+        WebappScanner scanner = new WebappScanner();
+        scanner.setBasedir(webappDirectory);
+        scanner.setExcludes(getExcludes());
+        scanner.addDefaultExcludes();
+        scanner.setIncludes(getIncludes());
+        scanner.scan();
+
+        List<String> directories = new ArrayList<>(List.of(scanner.getIncludedDirectories()));
+        directories.remove("");
+        directories.sort(ENTRY_ORDER);
+        for (String name : directories) {
+            hpiArchiver.addResource(
+                    ResourceFactory.createResource(new File(webappDirectory, name), name),
+                    name,
+                    hpiArchiver.getOverrideDirectoryMode());
+        }
+
+        Map<String, File> files = new TreeMap<>(ENTRY_ORDER);
+        for (String name : scanner.getIncludedFiles()) {
+            files.put(name, new File(webappDirectory, name));
+        }
+        for (Map.Entry<String, File> e : streamed.entrySet()) {
+            String name = e.getKey().replace('/', File.separatorChar);
+            if (scanner.accepts(name)) {
+                files.put(name, e.getValue());
+            }
+        }
+        for (Map.Entry<String, File> e : files.entrySet()) {
+            hpiArchiver.addFile(e.getValue(), e.getKey().replace(File.separatorChar, '/'));
+        }
+    }
+
+    /**
+     * Orders paths as a depth-first scan visiting the entries of each directory by name.
+     */
+    private static final Comparator<String> ENTRY_ORDER = (a, b) -> {
+        String[] x = a.split(Pattern.quote(File.separator));
+        String[] y = b.split(Pattern.quote(File.separator));
+        for (int i = 0; i < Math.min(x.length, y.length); i++) {
+            int c = x[i].compareTo(y[i]);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return Integer.compare(x.length, y.length);
+    };
+
+    /**
+     * Exposes the include and exclude patterns of a completed scan.
+     */
+    private static final class WebappScanner extends DirectoryScanner {
+        boolean accepts(String name) {
+            return isIncluded(name) && !isExcluded(name);
+        }
     }
 }
@@ -106,6 +106,7 @@ public class JarMojo extends AbstractJenkinsManifestMojo {
 
         // create a jar file to be used when other plugins depend on this plugin.
         File jarFile = getOutputFile(".jar");
+        JarArchiver jarArchiver = selectJarArchiver(this.jarArchiver);
         MavenArchiver archiver = newMavenArchiver(jarArchiver, jarFile);
         jarArchiver.addConfiguredManifest(manifest);
         jarArchiver.addDirectory(getClassesDirectory());
@@ -1,11 +1,14 @@
 package org.jenkinsci.maven.plugins.hpi;
 
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import hudson.util.VersionNumber;
 import java.io.File;
 import java.io.IOException;
 import java.util.List;
 import java.util.Objects;
+import java.util.jar.Attributes;
 import java.util.jar.JarFile;
+import java.util.jar.Manifest;
 import org.apache.maven.RepositoryUtils;
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.artifact.factory.ArtifactFactory;
@@ -47,6 +50,15 @@ public class MavenArtifact implements Comparable<MavenArtifact> {
     public final MavenSession session;
     public final MavenProject project;
 
+    /**
+     * Main manifest attributes of {@link #manifestFile}, read at most once per instance.
+     */
+    private Attributes mainAttributes;
+
+    private File manifestFile;
+
+    private MavenArtifact hpi;
+
     public MavenArtifact(
             Artifact artifact,
             RepositorySystem repositorySystem,
@@ -78,6 +90,24 @@ public class MavenArtifact implements Comparable<MavenArtifact> {
      * then the fallback logic is to look for a JAR manifest with entries typical of plugins.
      */
     public boolean isPlugin(Log log) {
+        if (!needsPomResolution()) {
+            String type = artifact.getType();
+            return type.equals("hpi") || type.equals("jpi");
+        }
+        ArtifactMetadataCache cache = ArtifactMetadataCache.of(session);
+        String key = ArtifactMetadataCache.keyOf(artifact);
+        Boolean plugin = cache.isPlugin(key);
+        if (plugin == null) {
+            plugin = inspectPlugin(log);
+            cache.putPlugin(key, plugin);
+        }
+        if (log.isDebugEnabled()) {
+            log.debug(artifact + (plugin ? " is" : " is not") + " a plugin (" + cache + ")");
+        }
+        return plugin;
+    }
+
+    private boolean inspectPlugin(Log log) {
         try {
             String type = getResolvedType();
             return type.equals("hpi") || type.equals("jpi");
@@ -90,18 +120,14 @@ public class MavenArtifact implements Comparable<MavenArtifact> {
         }
         var f = artifact.getFile();
         if (f.getName().endsWith(".jar") && f.isFile()) {
-            try (var jf = new JarFile(f)) {
-                var mani = jf.getManifest();
-                if (mani != null) {
-                    var attr = mani.getMainAttributes();
-                    return attr.getValue("Jenkins-Version") != null && attr.getValue("Plugin-Version") != null;
-                }
+            try {
+                var attr = getMainAttributes(f);
+                return attr.getValue("Jenkins-Version") != null && attr.getValue("Plugin-Version") != null;
             } catch (IOException x) {
                 if (log.isDebugEnabled()) {
                     log.debug(x);
                 } else {
-                    log.warn(
-                            "While inspecting " + artifact + ": " + x.getCause().getMessage());
+                    log.warn("While inspecting " + artifact + ": " + x.getMessage());
                 }
             }
         }
@@ -208,14 +234,17 @@ public class MavenArtifact implements Comparable<MavenArtifact> {
     /**
      * Returns {@link MavenArtifact} for the hpi variant of this artifact.
      */
-    public MavenArtifact getHpi() throws IOException {
-        Artifact a = artifactFactory.createArtifact(
-                artifact.getGroupId(),
-                artifact.getArtifactId(),
-                artifact.getVersion(),
-                Artifact.SCOPE_COMPILE,
-                getResolvedType());
-        return new MavenArtifact(a, repositorySystem, artifactFactory, builder, session, project);
+    public synchronized MavenArtifact getHpi() throws IOException {
+        if (hpi == null) {
+            Artifact a = artifactFactory.createArtifact(
+                    artifact.getGroupId(),
+                    artifact.getArtifactId(),
+                    artifact.getVersion(),
+                    Artifact.SCOPE_COMPILE,
+                    getResolvedType());
+            hpi = new MavenArtifact(a, repositorySystem, artifactFactory, builder, session, project);
+        }
+        return hpi;
     }
 
     public List<String /* of IDs*/> getDependencyTrail() {
@@ -270,9 +299,7 @@ public class MavenArtifact implements Comparable<MavenArtifact> {
     public String getActualArtifactId() throws IOException, MojoExecutionException {
         File file = getFile();
         if (file != null && file.isFile()) {
-            try (JarFile jf = new JarFile(file)) {
-                return jf.getManifest().getMainAttributes().getValue("Short-Name");
-            }
+            return getMainAttributes(file).getValue("Short-Name");
         } else {
             return getArtifactId();
         }
@@ -282,18 +309,64 @@ public class MavenArtifact implements Comparable<MavenArtifact> {
     public String getActualVersion() throws IOException, MojoExecutionException {
         File file = getFile();
         if (file != null && file.isFile()) {
-            try (JarFile jf = new JarFile(file)) {
-                // e.g. " (private-abcd1234-username)"; Implementation-Version is clean but seems less portable
-                return jf.getManifest()
-                        .getMainAttributes()
-                        .getValue("Plugin-Version")
-                        .replaceFirst(" [(].+[)]$", "");
-            }
+            // e.g. " (private-abcd1234-username)"; Implementation-Version is clean but seems less portable
+            return getMainAttributes(file).getValue("Plugin-Version").replaceFirst(" [(].+[)]$", "");
         } else {
             return getVersion();
         }
     }
 
+    /** For a plugin artifact, the {@code Jenkins-Version} (or {@code Hudson-Version}) from the plugin manifest, if any. */
+    @CheckForNull
+    public String getActualJenkinsVersion() throws IOException, MojoExecutionException {
+        File file = getFile();
+        if (file != null && file.isFile()) {
+            Attributes attributes = getMainAttributes(file);
+            String version = attributes.getValue("Jenkins-Version");
+            return version != null ? version : attributes.getValue("Hudson-Version");
+        } else {
+            return null;
+        }
+    }
+
+    /** For a plugin artifact, the {@code Plugin-Dependencies} from the plugin manifest, if any. */
+    @CheckForNull
+    public String getActualPluginDependencies() throws IOException, MojoExecutionException {
+        File file = getFile();
+        if (file != null && file.isFile()) {
+            return getMainAttributes(file).getValue("Plugin-Dependencies");
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Reads the main manifest attributes of the given plugin file.
+     * For released plugins in the local repository, only those listed in {@link PluginMetadataIndex#MANIFEST_ATTRIBUTES}
+     * are guaranteed to be present, since they may come from the {@link PluginMetadataIndex}.
+     * The attributes are read once and then shared by all callers, which must not modify them.
+     */
+    synchronized Attributes getMainAttributes(File file) throws IOException {
+        if (mainAttributes != null && file.equals(manifestFile)) {
+            return mainAttributes;
+        }
+        PluginMetadataIndex index = PluginMetadataIndex.of(session);
+        Attributes attributes = index.getManifestAttributes(artifact, file);
+        if (attributes == null) {
+            try (JarFile jf = new JarFile(file)) {
+                Manifest manifest = jf.getManifest();
+                if (manifest == null) {
+                    throw new IOException("No manifest found in " + file);
+                }
+                attributes = manifest.getMainAttributes();
+            }
+            index.putManifestAttributes(artifact, file, attributes);
+        }
+        mainAttributes = attributes;
+        manifestFile = file;
+        return attributes;
+    }
+
     public ArtifactVersion getVersionNumber() throws OverConstrainedVersionException {
         return artifact.getSelectedVersion();
     }
@@ -324,24 +397,41 @@ public class MavenArtifact implements Comparable<MavenArtifact> {
      * This is necessary when a plugin depends on another plugin and it doesn't specify the type as hpi or jpi.
      */
     private String getResolvedType() throws IOException {
-        try {
-            String type = artifact.getType();
-
-            // only resolve the POM if the packaging type is jar, because that's the default if no type has been
-            // specified
-            if (!type.equals("jar")) {
-                return type;
-            }
-            // also ignore core-assets, tests, etc.
-            if (artifact.getClassifier() != null && !artifact.getClassifier().isEmpty()) {
-                return type;
+        if (!needsPomResolution()) {
+            return artifact.getType();
+        }
+        // when a plugin depends on another plugin, it doesn't specify the type as hpi or jpi, so we need to resolve
+        // its POM to see it
+        ArtifactMetadataCache cache = ArtifactMetadataCache.of(session);
+        String key = ArtifactMetadataCache.keyOf(artifact);
+        String packaging = cache.getPackaging(key);
+        if (packaging == null) {
+            PluginMetadataIndex index = PluginMetadataIndex.of(session);
+            packaging = index.getPackaging(artifact);
+            if (packaging == null) {
+                try {
+                    packaging = resolvePom().getPackaging();
+                } catch (ProjectBuildingException e) {
+                    throw new IOException(
+                            "Failed to open artifact " + artifact + " at " + artifact.getFile() + ": " + e, e);
+                }
+                index.putPackaging(artifact, packaging);
             }
+            cache.putPackaging(key, packaging);
+        }
+        return packaging;
+    }
 
-            // when a plugin depends on another plugin, it doesn't specify the type as hpi or jpi, so we need to resolve
-            // its POM to see it
-            return resolvePom().getPackaging();
-        } catch (ProjectBuildingException e) {
-            throw new IOException("Failed to open artifact " + artifact + " at " + artifact.getFile() + ": " + e, e);
+    /**
+     * Whether the declared type is not conclusive, so that the packaging has to be looked up in the POM.
+     */
+    private boolean needsPomResolution() {
+        // only resolve the POM if the packaging type is jar, because that's the default if no type has been
+        // specified
+        if (!artifact.getType().equals("jar")) {
+            return false;
         }
+        // also ignore core-assets, tests, etc.
+        return artifact.getClassifier() == null || artifact.getClassifier().isEmpty();
     }
 }
@@ -0,0 +1,184 @@
+package org.jenkinsci.maven.plugins.hpi;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+import org.jenkinsci.maven.plugins.hpi.util.Utils;
+
+/**
+ * Summarizes everything an archive is built from, so that an unchanged archive need not be built again.
+ *
+ * <p>
+ * Inputs are grouped into named components, such as the manifest or the classes directory,
+ * each of which is reduced to a SHA-256 digest.
+ * Files contribute their path, size and modification time, not their content.
+ * Along with the digests we record the size and modification time of the archives built from them,
+ * so that archives deleted or modified since are built again,
+ * as well as any {@linkplain #record values} which need to be restored when the build is skipped.
+ */
+final class PackagingFingerprint {
+
+    private static final String COMPONENT = "component:";
+    private static final String OUTPUT = "output:";
+    private static final String RECORDED = "recorded:";
+
+    private final Map<String, MessageDigest> components = new LinkedHashMap<>();
+
+    private final Properties recorded = new Properties();
+
+    private final Properties previous = new Properties();
+
+    private MessageDigest component(String name) {
+        return components.computeIfAbsent(name, k -> Utils.sha256());
+    }
+
+    /**
+     * Adds a piece of text to a component.
+     */
+    void value(String component, @CheckForNull String value) {
+        component(component).update((value + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Adds a file, which may not exist, to a component.
+     */
+    void file(String component, @CheckForNull File file) {
+        if (file == null) {
+            value(component, "-");
+        } else {
+            value(component, file.getAbsolutePath() + " " + file.length() + " " + file.lastModified());
+        }
+    }
+
+    /**
+     * Adds all files in a directory, which may not exist, to a component.
+     */
+    void tree(String component, @CheckForNull File directory) throws IOException {
+        if (directory == null || !directory.isDirectory()) {
+            file(component, directory);
+            return;
+        }
+        Path root = directory.toPath();
+        value(component, root.toAbsolutePath().toString());
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path p : (Iterable<Path>) paths.filter(Files::isRegularFile).sorted()::iterator) {
+                File f = p.toFile();
+                value(component, root.relativize(p) + " " + f.length() + " " + f.lastModified());
+            }
+        }
+    }
+
+    /**
+     * Adds the content of a file, which may not exist, to a component.
+     */
+    void contents(String component, @CheckForNull File file) throws IOException {
+        if (file == null || !file.isFile()) {
+            file(component, file);
+            return;
+        }
+        MessageDigest md = component(component);
+        value(component, file.getAbsolutePath());
+        try (InputStream is = Files.newInputStream(file.toPath())) {
+            byte[] buf = new byte[65536];
+            int n;
+            while ((n = is.read(buf)) != -1) {
+                md.update(buf, 0, n);
+            }
+        }
+    }
+
+    /**
+     * Remembers a value produced by the build, to be saved along with this fingerprint.
+     */
+    void record(String key, String value) {
+        recorded.setProperty(key, value);
+    }
+
+    /**
+     * Returns a value {@linkplain #record recorded} by the previous build, once {@link #changesSince} was called.
+     */
+    @CheckForNull
+    String recordedBefore(String key) {
+        return previous.getProperty(RECORDED + key);
+    }
+
+    private Properties digests() {
+        Properties properties = new Properties();
+        for (Map.Entry<String, MessageDigest> e : components.entrySet()) {
+            try {
+                MessageDigest md = (MessageDigest) e.getValue().clone();
+                properties.setProperty(COMPONENT + e.getKey(), Utils.hex(md.digest()));
+            } catch (CloneNotSupportedException x) {
+                throw new AssertionError(x);
+            }
+        }
+        return properties;
+    }
+
+    private Properties toProperties(File... outputs) {
+        Properties properties = digests();
+        for (File output : outputs) {
+            properties.setProperty(OUTPUT + output.getAbsolutePath(), output.length() + " " + output.lastModified());
+        }
+        for (String key : recorded.stringPropertyNames()) {
+            properties.setProperty(RECORDED + key, recorded.getProperty(key));
+        }
+        return properties;
+    }
+
+    /**
+     * Compares this fingerprint with the one recorded by the previous build.
+     *
+     * @param outputs the archives which would be built
+     * @return the reasons why the archives need to be built again; empty if they are up to date
+     */
+    List<String> changesSince(File stateFile, File... outputs) {
+        previous.clear();
+        try (InputStream is = Files.newInputStream(stateFile.toPath())) {
+            previous.load(is);
+        } catch (NoSuchFileException x) {
+            return List.of("no previous build recorded");
+        } catch (IOException | IllegalArgumentException x) {
+            previous.clear();
+            return List.of("previous build record is unreadable");
+        }
+        List<String> reasons = new ArrayList<>();
+        Properties current = digests();
+        for (String key : new TreeSet<>(current.stringPropertyNames())) {
+            if (!current.getProperty(key).equals(previous.getProperty(key))) {
+                reasons.add(key.substring(COMPONENT.length()) + " changed");
+            }
+        }
+        for (File output : outputs) {
+            String key = OUTPUT + output.getAbsolutePath();
+            String expected = previous.getProperty(key);
+            if (!output.isFile()) {
+                reasons.add(output.getName() + " is missing");
+            } else if (!(output.length() + " " + output.lastModified()).equals(expected)) {
+                reasons.add(output.getName() + " was modified");
+            }
+        }
+        return reasons;
+    }
+
+    /**
+     * Records this fingerprint along with the archives built from it.
+     */
+    void save(File stateFile, File... outputs) throws IOException {
+        Properties properties = toProperties(outputs);
+        Utils.writeAtomically(stateFile.toPath(), os -> properties.store(os, "maven-hpi-plugin packaging inputs"));
+    }
+}
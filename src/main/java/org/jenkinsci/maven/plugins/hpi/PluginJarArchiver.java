@@ -0,0 +1,87 @@
+package org.jenkinsci.maven.plugins.hpi;
+
+import java.io.File;
+import java.io.IOException;
+import org.apache.commons.compress.parallel.InputStreamSupplier;
+import org.codehaus.plexus.archiver.ArchiverException;
+import org.codehaus.plexus.archiver.jar.JarArchiver;
+import org.codehaus.plexus.archiver.zip.ConcurrentJarCreator;
+import org.codehaus.plexus.util.SelectorUtils;
+
+/**
+ * {@link JarArchiver} with finer control over how the entries of a .jar or .hpi are compressed.
+ *
+ * <p>
+ * Entries matching the {@linkplain #setStoredEntries stored patterns} are written with the {@code STORED} method.
+ * Nested jars and most binary assets are compressed already,
+ * so deflating them again costs time when the archive is created and when it is read,
+ * for next to no reduction in size.
+ *
+ * <p>
+ * Entries are deflated concurrently by {@link ConcurrentJarCreator}, one thread per processor,
+ * which then writes them in the order they were added, so the archive does not depend on scheduling.
+ * With {@linkplain #setAddInParallel parallel addition} turned off,
+ * every entry is deflated on the calling thread instead, producing the same bytes.
+ */
+final class PluginJarArchiver extends JarArchiver {
+
+    private String[] storedIncludes = {};
+
+    private String[] storedExcludes = {};
+
+    private boolean addInParallel = true;
+
+    /**
+     * @param includes patterns of entry names to store, matched case-insensitively
+     * @param excludes patterns of entry names to deflate anyway
+     */
+    void setStoredEntries(String[] includes, String[] excludes) {
+        this.storedIncludes = includes;
+        this.storedExcludes = excludes;
+    }
+
+    /**
+     * @param addInParallel false to deflate every entry on the thread creating the archive
+     */
+    void setAddInParallel(boolean addInParallel) {
+        this.addInParallel = addInParallel;
+    }
+
+    boolean isStored(String vPath) {
+        return matches(storedIncludes, vPath) && !matches(storedExcludes, vPath);
+    }
+
+    private static boolean matches(String[] patterns, String vPath) {
+        for (String pattern : patterns) {
+            if (SelectorUtils.matchPath(pattern.trim(), vPath, "/", false)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    protected void zipFile(
+            InputStreamSupplier in,
+            ConcurrentJarCreator zOut,
+            String vPath,
+            long lastModified,
+            File fromArchive,
+            int mode,
+            String symlinkDestination,
+            boolean addInParallel)
+            throws IOException, ArchiverException {
+        boolean parallel = addInParallel && this.addInParallel;
+        if (!isCompress() || !isStored(vPath)) {
+            super.zipFile(in, zOut, vPath, lastModified, fromArchive, mode, symlinkDestination, parallel);
+            return;
+        }
+        // the compression method is chosen as the entry is created, before its content is queued
+        setCompress(false);
+        try {
+            super.zipFile(in, zOut, vPath, lastModified, fromArchive, mode, symlinkDestination, parallel);
+        } finally {
+            setCompress(true);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package org.jenkinsci.maven.plugins.hpi;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Properties;
+import java.util.function.Consumer;
+import java.util.jar.Attributes;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.execution.MavenSession;
+import org.jenkinsci.maven.plugins.hpi.util.Utils;
+
+/**
+ * Remembers what we learned about released artifacts in the local repository across builds.
+ *
+ * <p>
+ * A release never changes once deployed, so its packaging and the few manifest attributes we care about
+ * can be kept in a small properties file under {@code .cache/maven-hpi-plugin/metadata/} in the local repository,
+ * laid out like the repository itself.
+ * Each entry records the size and modification time of the artifact file it was derived from,
+ * and is ignored when those no longer match, say because the artifact was downloaded again.
+ *
+ * <p>
+ * Entries are replaced atomically, so Maven processes sharing a local repository only ever see complete entries.
+ * If two of them race, one update is lost and simply recomputed next time.
+ * Any I/O problem with the index is ignored; callers then derive the metadata the slow way.
+ *
+ * @see ArtifactMetadataCache
+ */
+final class PluginMetadataIndex {
+
+    /**
+     * Main manifest attributes worth remembering.
+     */
+    static final List<String> MANIFEST_ATTRIBUTES =
+            List.of("Short-Name", "Plugin-Version", "Jenkins-Version", "Hudson-Version", "Plugin-Dependencies");
+
+    /**
+     * Marks entries holding exactly the {@link #MANIFEST_ATTRIBUTES}, so that entries written before the list
+     * changed are read again from the manifest.
+     */
+    private static final String MANIFEST_ATTRIBUTES_KEY = String.join(",", MANIFEST_ATTRIBUTES);
+
+    private static final String SIZE = "size";
+    private static final String LAST_MODIFIED = "lastModified";
+    private static final String PACKAGING = "packaging";
+    private static final String MANIFEST = "manifest";
+
+    /**
+     * Base directory of the local repository, or null if there is none.
+     */
+    @CheckForNull
+    private final Path repository;
+
+    private PluginMetadataIndex(@CheckForNull File repository) {
+        this.repository = repository != null ? repository.toPath().toAbsolutePath().normalize() : null;
+    }
+
+    static PluginMetadataIndex of(MavenSession session) {
+        return SessionScoped.get(session, PluginMetadataIndex.class, () -> new PluginMetadataIndex(
+                session.getRepositorySession().getLocalRepository().getBasedir()));
+    }
+
+    /**
+     * @return the packaging declared in the POM of the artifact, or null if not known
+     */
+    @CheckForNull
+    String getPackaging(Artifact artifact) {
+        Properties entry = load(entryFor(artifact, artifact.getFile()), artifact.getFile());
+        return entry != null ? entry.getProperty(PACKAGING) : null;
+    }
+
+    void putPackaging(Artifact artifact, String packaging) {
+        update(artifact, artifact.getFile(), entry -> entry.setProperty(PACKAGING, packaging));
+    }
+
+    /**
+     * @param file the resolved file of the artifact
+     * @return those of the {@link #MANIFEST_ATTRIBUTES} present in the main section of the manifest of the artifact,
+     *     or null if not known
+     */
+    @CheckForNull
+    Attributes getManifestAttributes(Artifact artifact, File file) {
+        Properties entry = load(entryFor(artifact, file), file);
+        if (entry == null || !MANIFEST_ATTRIBUTES_KEY.equals(entry.getProperty(MANIFEST))) {
+            return null;
+        }
+        Attributes attributes = new Attributes();
+        for (String name : MANIFEST_ATTRIBUTES) {
+            String value = entry.getProperty(MANIFEST + '.' + name);
+            if (value != null) {
+                attributes.putValue(name, value);
+            }
+        }
+        return attributes;
+    }
+
+    void putManifestAttributes(Artifact artifact, File file, Attributes attributes) {
+        update(artifact, file, entry -> {
+            entry.setProperty(MANIFEST, MANIFEST_ATTRIBUTES_KEY);
+            for (String name : MANIFEST_ATTRIBUTES) {
+                String value = attributes.getValue(name);
+                if (value != null) {
+                    entry.setProperty(MANIFEST + '.' + name, value);
+                }
+            }
+        });
+    }
+
+    /**
+     * Locates the index entry for an artifact, if it is eligible at all:
+     * only released artifacts that actually live in the local repository are indexed.
+     */
+    @CheckForNull
+    @SuppressFBWarnings(
+            value = "PATH_TRAVERSAL_IN",
+            justification = "The entry path mirrors an artifact path already inside the local repository.")
+    private Path entryFor(Artifact artifact, @CheckForNull File file) {
+        if (repository == null || artifact.isSnapshot() || file == null || !file.isFile()) {
+            return null;
+        }
+        Path path = file.toPath().toAbsolutePath().normalize();
+        if (!path.startsWith(repository)) {
+            return null;
+        }
+        Path relative = repository.relativize(path);
+        return repository
+                .resolve(".cache/maven-hpi-plugin/metadata")
+                .resolve(relative)
+                .resolveSibling(relative.getFileName() + ".properties");
+    }
+
+    @CheckForNull
+    private static Properties load(@CheckForNull Path entry, File file) {
+        if (entry == null) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (InputStream is = Files.newInputStream(entry)) {
+            properties.load(is);
+        } catch (NoSuchFileException x) {
+            return null;
+        } catch (IOException | IllegalArgumentException x) {
+            // unreadable or corrupt, will be overwritten
+            return null;
+        }
+        if (!String.valueOf(file.length()).equals(properties.getProperty(SIZE))
+                || !String.valueOf(file.lastModified()).equals(properties.getProperty(LAST_MODIFIED))) {
+            return null;
+        }
+        return properties;
+    }
+
+    private void update(Artifact artifact, File file, Consumer<Properties> updater) {
+        Path entry = entryFor(artifact, file);
+        if (entry == null) {
+            return;
+        }
+        Properties loaded = load(entry, file);
+        Properties properties = loaded != null ? loaded : new Properties();
+        if (loaded == null) {
+            properties.setProperty(SIZE, String.valueOf(file.length()));
+            properties.setProperty(LAST_MODIFIED, String.valueOf(file.lastModified()));
+        }
+        updater.accept(properties);
+        try {
+            Utils.writeAtomically(entry, os -> properties.store(os, artifact.getId()));
+        } catch (IOException x) {
+            // e.g. a read-only local repository; we will just derive the metadata again next time
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package org.jenkinsci.maven.plugins.hpi;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import org.jenkinsci.maven.plugins.hpi.util.Utils;
+
+/**
+ * Remembers how test dependencies were resolved for a given dependency model and set of overrides,
+ * in a directory which may be shared by many builds, such as plugin compatibility tester runs.
+ *
+ * <p>
+ * Each entry is a properties file named after the SHA-256 digest of its key,
+ * holding the additions, deletions and updates to the classpath, the resulting surefire properties,
+ * and the plugin files to place in {@code test-dependencies}.
+ * Entries are replaced atomically, and an entry whose files are gone from the local repository is ignored.
+ */
+final class ResolutionCache {
+
+    private static final String ADDITION = "addition.";
+    private static final String DELETION = "deletion.";
+    private static final String UPDATE = "update.";
+    private static final String PLUGIN = "plugin.";
+    private static final String ADDITIONAL_CLASSPATH = "additionalClasspath";
+    private static final String DEPENDENCY_EXCLUDES = "dependencyExcludes";
+
+    /**
+     * What a resolution came up with.
+     */
+    static final class Entry {
+        final Map<String, String> additions = new TreeMap<>();
+        final Map<String, String> deletions = new TreeMap<>();
+        final Map<String, String> updates = new TreeMap<>();
+
+        /**
+         * Plugin files keyed by the name they get in {@code test-dependencies}, in index order.
+         */
+        final Map<String, File> plugins = new LinkedHashMap<>();
+
+        final List<String> additionalClasspath = new ArrayList<>();
+        final List<String> dependencyExcludes = new ArrayList<>();
+
+        boolean isComplete() {
+            for (File plugin : plugins.values()) {
+                if (!plugin.isFile()) {
+                    return false;
+                }
+            }
+            for (String element : additionalClasspath) {
+                if (!new File(element).exists()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private final Path directory;
+
+    ResolutionCache(File directory) {
+        this.directory = directory.toPath();
+    }
+
+    /**
+     * Reduces the lines describing the inputs of a resolution to a key.
+     */
+    static String key(List<String> lines) {
+        MessageDigest md = Utils.sha256();
+        for (String line : lines) {
+            md.update((line + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+        return Utils.hex(md.digest());
+    }
+
+    /**
+     * @return the entry, or null if there is none or it refers to files which are gone
+     */
+    @CheckForNull
+    Entry load(String key) {
+        Properties properties = new Properties();
+        try (InputStream is = Files.newInputStream(directory.resolve(key + ".properties"))) {
+            properties.load(is);
+        } catch (NoSuchFileException x) {
+            return null;
+        } catch (IOException | IllegalArgumentException x) {
+            // unreadable or corrupt, will be overwritten
+            return null;
+        }
+        Entry entry = new Entry();
+        Map<Integer, String[]> plugins = new TreeMap<>();
+        for (String name : properties.stringPropertyNames()) {
+            String value = properties.getProperty(name);
+            if (name.startsWith(ADDITION)) {
+                entry.additions.put(name.substring(ADDITION.length()), value);
+            } else if (name.startsWith(DELETION)) {
+                entry.deletions.put(name.substring(DELETION.length()), value);
+            } else if (name.startsWith(UPDATE)) {
+                entry.updates.put(name.substring(UPDATE.length()), value);
+            } else if (name.startsWith(PLUGIN)) {
+                int eq = value.indexOf('=');
+                if (eq < 0) {
+                    return null;
+                }
+                try {
+                    plugins.put(
+                            Integer.valueOf(name.substring(PLUGIN.length())),
+                            new String[] {value.substring(0, eq), value.substring(eq + 1)});
+                } catch (NumberFormatException x) {
+                    return null;
+                }
+            }
+        }
+        for (String[] plugin : plugins.values()) {
+            entry.plugins.put(plugin[0], new File(plugin[1]));
+        }
+        String additionalClasspath = properties.getProperty(ADDITIONAL_CLASSPATH);
+        String dependencyExcludes = properties.getProperty(DEPENDENCY_EXCLUDES);
+        if (additionalClasspath == null || dependencyExcludes == null) {
+            return null;
+        }
+        if (!additionalClasspath.isEmpty()) {
+            entry.additionalClasspath.addAll(List.of(additionalClasspath.split(",")));
+        }
+        if (!dependencyExcludes.isEmpty()) {
+            entry.dependencyExcludes.addAll(List.of(dependencyExcludes.split(",")));
+        }
+        return entry.isComplete() ? entry : null;
+    }
+
+    void store(String key, Entry entry) throws IOException {
+        Properties properties = new Properties();
+        entry.additions.forEach((k, v) -> properties.setProperty(ADDITION + k, v));
+        entry.deletions.forEach((k, v) -> properties.setProperty(DELETION + k, v));
+        entry.updates.forEach((k, v) -> properties.setProperty(UPDATE + k, v));
+        int i = 0;
+        for (Map.Entry<String, File> plugin : entry.plugins.entrySet()) {
+            properties.setProperty(PLUGIN + i++, plugin.getKey() + "=" + plugin.getValue().getAbsolutePath());
+        }
+        properties.setProperty(ADDITIONAL_CLASSPATH, String.join(",", entry.additionalClasspath));
+        properties.setProperty(DEPENDENCY_EXCLUDES, String.join(",", entry.dependencyExcludes));
+
+        Utils.writeAtomically(
+                directory.resolve(key + ".properties"),
+                os -> properties.store(os, "maven-hpi-plugin test dependency resolution"));
+    }
+}
@@ -14,6 +14,7 @@
 // ========================================================================
 package org.jenkinsci.maven.plugins.hpi;
 
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.Nullable;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import hudson.util.VersionNumber;
@@ -24,15 +25,23 @@ import java.lang.management.ManagementFactory;
 import java.lang.management.RuntimeMXBean;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.jar.JarFile;
 import java.util.logging.Level;
 import java.util.regex.Matcher;
@@ -50,6 +59,7 @@ import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.plugins.annotations.ResolutionScope;
 import org.apache.maven.project.MavenProject;
+import org.jenkinsci.maven.plugins.hpi.util.Utils;
 import org.twdata.maven.mojoexecutor.MojoExecutor;
 
 /**
@@ -74,6 +84,11 @@ public class RunMojo extends AbstractHpiMojo {
     private static final List<String> FILTERED_JVM_SYSTEM_PROPERTIES_EXACT = List.of(
             "host", "jenkinsHome", "style.color", "port", "test", "wildcardLocalhostDNS", "wildcardDNS", "webAppFile");
 
+    /**
+     * Records which dependency plugins were staged in {@code JENKINS_HOME/plugins}.
+     */
+    private static final String STAGED_PLUGINS = ".hpi-run-staged-plugins";
+
     /**
      * The location of the war file.
      *
@@ -244,6 +259,48 @@ public class RunMojo extends AbstractHpiMojo {
     @Parameter
     private Map<String, String> systemProperties;
 
+    /**
+     * If true, dependency plugins are hard linked (or cloned, where the file system supports it)
+     * into {@code JENKINS_HOME/plugins} from the local repository rather than copied.
+     * Jenkins replaces plugin files rather than writing to them, so the local repository is left alone.
+     */
+    @Parameter(property = "hpi.linkDependencyPlugins", defaultValue = "false")
+    private boolean linkDependencyPlugins;
+
+    /**
+     * If true, the WAR is exploded into a directory of the local repository named after its checksum,
+     * rather than into {@code JENKINS_HOME/war}, and reused by every launch of the same WAR from any project.
+     * The three most recently used WARs are kept exploded there.
+     * While another launch uses the same WAR, or if {@link #winstoneArgs} sets {@code --webroot} already,
+     * the WAR is exploded as usual.
+     */
+    @Parameter(property = "hpi.cacheExplodedWar", defaultValue = "false")
+    private boolean cacheExplodedWar;
+
+    /**
+     * If true, the forked Jenkins uses a class data sharing archive of the classes it loads, to start faster.
+     * The archive is created when Jenkins first stops, unless it is killed, and kept in {@code JENKINS_HOME/cds}
+     * for as long as the Java runtime, the WAR and the dependency plugins stay the same.
+     * Only one launch at a time uses the archives of a given {@code JENKINS_HOME}; others run without.
+     */
+    @Parameter(property = "hpi.cds", defaultValue = "false")
+    private boolean cds;
+
+    /**
+     * If true, watches the output and resource directories of the project once Jenkins is launched,
+     * and restarts Jenkins with a regenerated {@code .hpl} whenever they change, say after compiling in an IDE.
+     * Changes to Jelly views alone do not cause a restart, since Stapler picks them up as they are.
+     */
+    @Parameter(property = "hpi.watch", defaultValue = "false")
+    private boolean watch;
+
+    /**
+     * In {@link #watch} mode, for how many milliseconds the watched directories must stay unchanged
+     * before Jenkins is restarted, so that a whole compilation causes a single restart.
+     */
+    @Parameter(property = "hpi.watch.quietPeriod", defaultValue = "1000")
+    private long watchQuietPeriod;
+
     @Override
     @SuppressFBWarnings(
             value = "COMMAND_INJECTION",
@@ -302,40 +359,12 @@ public class RunMojo extends AbstractHpiMojo {
         generateHpl();
 
         // copy other dependency Jenkins plugins
+        List<DependencyPlugin> dependencyPlugins = new ArrayList<>(
+                Utils.mapInParallel(getProjectArtifacts(), getThreads(), this::resolveDependencyPlugin));
+        dependencyPlugins.removeIf(Objects::isNull);
+        List<String> stagedPlugins;
         try {
-            for (MavenArtifact a : getProjectArtifacts()) {
-                if (!a.isPlugin(getLog())) {
-                    continue;
-                }
-
-                // find corresponding .hpi file
-                Artifact hpi =
-                        artifactFactory.createArtifact(a.getGroupId(), a.getArtifactId(), a.getVersion(), null, "hpi");
-                hpi = MavenArtifact.resolveArtifact(hpi, project, session, repositorySystem);
-
-                // check recursive dependency. this is a rare case that happens when we split out some things from the
-                // core into a plugin
-                if (hasSameGavAsProject(hpi)) {
-                    continue;
-                }
-
-                if (hpi.getFile().isDirectory()) {
-                    throw new UnsupportedOperationException(
-                            hpi.getFile() + " is a directory and not packaged yet. this isn't supported");
-                }
-
-                File upstreamHpl = pluginWorkspaceMap.read(hpi.getId());
-                String actualArtifactId = a.getActualArtifactId();
-                if (actualArtifactId == null) {
-                    throw new MojoExecutionException(
-                            "Failed to load actual artifactId from " + a + " ~ " + a.getFile());
-                }
-                if (upstreamHpl != null) {
-                    copyHpl(upstreamHpl, pluginsDir, actualArtifactId);
-                } else {
-                    copyPlugin(hpi.getFile(), pluginsDir, actualArtifactId);
-                }
-            }
+            stagedPlugins = stageDependencyPlugins(dependencyPlugins, pluginsDir);
         } catch (IOException e) {
             throw new MojoExecutionException("Unable to copy dependency plugin", e);
         }
@@ -447,19 +476,32 @@ public class RunMojo extends AbstractHpiMojo {
             cmd.add("--prefix=" + prefix);
         }
 
+        ExplodedWarCache explodedWar =
+                cacheExplodedWar && (winstoneArgs == null || !winstoneArgs.contains("--webroot="))
+                        ? lockExplodedWar()
+                        : null;
+        if (explodedWar != null) {
+            cmd.add("--webroot=" + explodedWar.directory());
+        }
+
         if (winstoneArgs != null) {
             cmd.add(winstoneArgs);
         }
 
-        getLog().info("Launching Jenkins: " + String.join(" ", cmd));
-
         ProcessBuilder pb = new ProcessBuilder(cmd);
         pb.directory(jenkinsHome);
         pb.inheritIO();
         pb.environment().put("JENKINS_HOME", jenkinsHome.getAbsolutePath());
-        try {
-            Process proc = pb.start();
+        // the exploded WAR and the class data sharing archives stay locked until Jenkins is done with them
+        try (explodedWar;
+                FileChannel cdsLock = cds ? lockCdsArchives() : null) {
+            Path cdsArchive = cdsLock != null ? cdsArchive(stagedPlugins) : null;
+            Process proc = launch(pb, cmd, cdsArchive);
+            if (watch) {
+                proc = watchAndRestart(pb, cmd, cdsArchive, proc);
+            }
             int exitCode = proc.waitFor();
+            keepCdsArchive(proc, cdsArchive);
             if (exitCode != 0) {
                 throw new MojoExecutionException("Jenkins exited with code " + exitCode);
             }
@@ -468,6 +510,51 @@ public class RunMojo extends AbstractHpiMojo {
         }
     }
 
+    /**
+     * Restarts Jenkins whenever the compiled classes or resources of the plugin change.
+     * Jenkins cannot unload a plugin, so a restart of the forked JVM is the only way to pick up new classes;
+     * everything else, like resolving and copying dependency plugins, is not done again.
+     *
+     * @return the last Jenkins process, once it exited on its own
+     */
+    private Process watchAndRestart(ProcessBuilder pb, List<String> cmd, @CheckForNull Path cdsArchive, Process proc)
+            throws IOException, InterruptedException, MojoExecutionException {
+        List<Path> roots = new ArrayList<>();
+        roots.add(Path.of(getProject().getBuild().getOutputDirectory()));
+        for (Resource r : getProject().getBuild().getResources()) {
+            roots.add(Path.of(r.getDirectory()));
+        }
+        try (DirectoryWatcher watcher = new DirectoryWatcher(
+                roots, p -> !p.getFileName().toString().endsWith(".jelly"))) {
+            getLog().info("Watching " + roots + " for changes");
+            while (proc.isAlive()) {
+                // wake up regularly to notice Jenkins exiting
+                Set<Path> changes = watcher.awaitChanges(1000, watchQuietPeriod);
+                if (changes.isEmpty() || !proc.isAlive()) {
+                    continue;
+                }
+                getLog().info("===========> " + changes.size() + " changed files, restarting Jenkins");
+                if (getLog().isDebugEnabled()) {
+                    getLog().debug("Changed: " + changes);
+                }
+                generateHpl();
+                stop(proc);
+                keepCdsArchive(proc, cdsArchive);
+                proc = launch(pb, cmd, cdsArchive);
+            }
+        }
+        return proc;
+    }
+
+    private void stop(Process proc) throws InterruptedException {
+        // lets Jenkins run its shutdown hooks
+        proc.destroy();
+        if (!proc.waitFor(30, TimeUnit.SECONDS)) {
+            getLog().warn("Jenkins did not stop within 30 seconds, killing it");
+            proc.destroyForcibly().waitFor();
+        }
+    }
+
     private String getExternalHost(String effectiveHost) {
         boolean wildcardEnabled =
                 (wildcardLocalhostDNS != null && !wildcardLocalhostDNS.trim().isEmpty())
@@ -501,34 +588,272 @@ public class RunMojo extends AbstractHpiMojo {
         return args.toString().contains("jdwp");
     }
 
+    /**
+     * A dependency plugin to stage in {@code JENKINS_HOME/plugins}.
+     *
+     * @param hpi the resolved {@code .hpi}, whose manifest is read at most once
+     * @param shortName the name it is staged under
+     * @param upstreamHpl the {@code .hpl} of the plugin from a workspace, if it is checked out
+     */
+    private record DependencyPlugin(MavenArtifact hpi, String shortName, @CheckForNull File upstreamHpl) {}
+
+    /**
+     * Resolves the {@code .hpi} of a dependency, possibly from a remote repository.
+     * Called concurrently.
+     *
+     * @return null if the dependency is not a plugin to stage
+     */
+    @CheckForNull
+    private DependencyPlugin resolveDependencyPlugin(MavenArtifact a) throws MojoExecutionException {
+        if (!a.isPlugin(getLog())) {
+            return null;
+        }
+
+        // find corresponding .hpi file
+        Artifact hpi = artifactFactory.createArtifact(a.getGroupId(), a.getArtifactId(), a.getVersion(), null, "hpi");
+        hpi = MavenArtifact.resolveArtifact(hpi, project, session, repositorySystem);
+
+        // check recursive dependency. this is a rare case that happens when we split out some things from the
+        // core into a plugin
+        if (hasSameGavAsProject(hpi)) {
+            return null;
+        }
+
+        if (hpi.getFile().isDirectory()) {
+            throw new UnsupportedOperationException(
+                    hpi.getFile() + " is a directory and not packaged yet. this isn't supported");
+        }
+
+        try {
+            File upstreamHpl = pluginWorkspaceMap.read(hpi.getId());
+            MavenArtifact plugin = wrap(hpi);
+            String actualArtifactId = plugin.getActualArtifactId();
+            if (actualArtifactId == null) {
+                throw new MojoExecutionException("Failed to load actual artifactId from " + a + " ~ " + hpi.getFile());
+            }
+            return new DependencyPlugin(plugin, actualArtifactId, upstreamHpl);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to copy dependency plugin", e);
+        }
+    }
+
+    /**
+     * Places the dependency plugins in {@code JENKINS_HOME/plugins}.
+     * The plugins staged last time are recorded, so that nothing needs to be done
+     * when neither they nor what was staged changed since.
+     *
+     * @return a description of the staged plugins
+     */
+    private List<String> stageDependencyPlugins(List<DependencyPlugin> dependencyPlugins, File pluginsDir)
+            throws IOException, MojoExecutionException {
+        Path stateFile = pluginsDir.toPath().resolve(STAGED_PLUGINS);
+        List<String> state = new ArrayList<>();
+        boolean staged = Files.isRegularFile(stateFile);
+        for (DependencyPlugin p : dependencyPlugins) {
+            File src = p.upstreamHpl() != null ? p.upstreamHpl() : p.hpi().getFile();
+            String extension = p.upstreamHpl() != null ? ".jpl" : ".jpi";
+            state.add(p.shortName() + extension + " " + src.getAbsolutePath() + " " + src.length() + " "
+                    + src.lastModified());
+            staged &= Files.isRegularFile(pluginsDir.toPath().resolve(p.shortName() + extension));
+        }
+        if (staged && state.equals(Files.readAllLines(stateFile, StandardCharsets.UTF_8))) {
+            getLog().info("Dependency Jenkins plugins are up to date");
+            return state;
+        }
+        // in case we fail half way through
+        Files.deleteIfExists(stateFile);
+
+        FileLinker linker = new FileLinker(linkDependencyPlugins, getLog());
+        // plugins staged under the same name must be handled in order, as the newest one wins
+        Map<String, List<DependencyPlugin>> byShortName = new LinkedHashMap<>();
+        for (DependencyPlugin p : dependencyPlugins) {
+            byShortName.computeIfAbsent(p.shortName(), k -> new ArrayList<>()).add(p);
+        }
+        Utils.mapInParallel(byShortName.values(), getThreads(), plugins -> {
+            try {
+                for (DependencyPlugin p : plugins) {
+                    if (p.upstreamHpl() != null) {
+                        copyHpl(p.upstreamHpl(), pluginsDir, p.shortName());
+                    } else {
+                        copyPlugin(p.hpi(), pluginsDir, p.shortName(), linker);
+                    }
+                }
+            } catch (IOException e) {
+                throw new MojoExecutionException("Unable to copy dependency plugin", e);
+            }
+            return null;
+        });
+        getLog().debug("Staged dependency Jenkins plugins: " + linker);
+        Files.write(stateFile, state, StandardCharsets.UTF_8);
+        return state;
+    }
+
+    /**
+     * Locks the class data sharing archives of {@code JENKINS_HOME}, so that another launch with the same
+     * {@code JENKINS_HOME} neither deletes the archive in use nor dumps one to the same file.
+     *
+     * @return the locked channel, to be closed once Jenkins is done, or null if another launch is using the archives
+     */
+    @CheckForNull
+    private FileChannel lockCdsArchives() throws IOException {
+        Path dir = jenkinsHome.toPath().resolve("cds");
+        Files.createDirectories(dir);
+        FileLock lock = Utils.tryLock(dir.resolve(".lock"));
+        if (lock == null) {
+            getLog().info("Another launch is using the class data sharing archives in " + dir + ", not using them");
+            return null;
+        }
+        return lock.channel();
+    }
+
+    /**
+     * Picks the class data sharing archive for this JVM, WAR and set of dependency plugins,
+     * and deletes archives for other ones, which are unlikely to be used again.
+     * Must be called with the archives {@linkplain #lockCdsArchives locked}.
+     */
+    private Path cdsArchive(List<String> stagedPlugins) throws IOException {
+        List<String> key = new ArrayList<>();
+        key.add(System.getProperty("java.home"));
+        key.add(System.getProperty("java.vm.version"));
+        key.add(webAppFile.getAbsolutePath() + " " + BundledPlugins.checksum(session, webAppFile));
+        key.addAll(stagedPlugins);
+        Path dir = jenkinsHome.toPath().resolve("cds");
+        Path archive = dir.resolve(ResolutionCache.key(key) + ".jsa");
+        // including archives left half dumped
+        try (DirectoryStream<Path> archives = Files.newDirectoryStream(dir, "*.jsa*")) {
+            for (Path stale : archives) {
+                if (!stale.equals(archive)) {
+                    getLog().debug("Deleting stale class data sharing archive " + stale);
+                    Files.delete(stale);
+                }
+            }
+        }
+        return archive;
+    }
+
+    /**
+     * Locks the directory in the local repository to explode the WAR into.
+     * Winstone only explodes the WAR again when it is newer than what is in there,
+     * so a directory per WAR checksum lets every {@code JENKINS_HOME} and every launch share one exploded copy.
+     *
+     * @return null if another launch is using it, in which case Jenkins explodes the WAR as usual
+     */
+    @CheckForNull
+    private ExplodedWarCache lockExplodedWar() throws MojoExecutionException {
+        Path root = session.getRepositorySession()
+                .getLocalRepository()
+                .getBasedir()
+                .toPath()
+                .resolve(".cache/maven-hpi-plugin/exploded-war");
+        try {
+            ExplodedWarCache explodedWar =
+                    ExplodedWarCache.lock(root, BundledPlugins.checksum(session, webAppFile), getLog());
+            if (explodedWar == null) {
+                getLog().info("The exploded WAR in " + root + " is in use by another launch, not using it");
+            }
+            return explodedWar;
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to lock the exploded WAR in " + root, e);
+        }
+    }
+
+    /**
+     * Starts Jenkins, using the class data sharing archive if there is one already, or else creating it on exit.
+     */
+    private Process launch(ProcessBuilder pb, List<String> cmd, @CheckForNull Path cdsArchive) throws IOException {
+        List<String> command = new ArrayList<>(cmd);
+        if (cdsArchive != null) {
+            // right after the java executable, which is the one running Maven
+            if (Runtime.version().feature() >= 19) {
+                // the JVM checks the archive itself, and dumps it again at exit if it is missing or unusable
+                command.addAll(1, List.of("-XX:+AutoCreateSharedArchive", "-XX:SharedArchiveFile=" + cdsArchive));
+            } else if (Files.isRegularFile(cdsArchive)) {
+                command.add(1, "-XX:SharedArchiveFile=" + cdsArchive);
+            } else {
+                getLog().info("Creating class data sharing archive " + cdsArchive + " once Jenkins stops");
+                command.add(1, "-XX:ArchiveClassesAtExit=" + dumpedCdsArchive(cdsArchive));
+            }
+        }
+        getLog().info("Launching Jenkins: " + String.join(" ", command));
+        return pb.command(command).start();
+    }
+
+    /**
+     * Where a JVM without {@code -XX:+AutoCreateSharedArchive} dumps the class data sharing archive,
+     * which is only moved into place once we know the dump is complete.
+     */
+    private static Path dumpedCdsArchive(Path cdsArchive) {
+        return cdsArchive.resolveSibling(cdsArchive.getFileName() + ".tmp");
+    }
+
+    /**
+     * Keeps the class data sharing archive dumped by a Jenkins which stopped in an orderly way,
+     * and discards one dumped by a Jenkins which was killed, since it may be truncated.
+     */
+    private void keepCdsArchive(Process proc, @CheckForNull Path cdsArchive) throws IOException {
+        if (cdsArchive == null) {
+            return;
+        }
+        Path dumped = dumpedCdsArchive(cdsArchive);
+        if (!Files.isRegularFile(dumped)) {
+            return;
+        }
+        int exitCode = proc.exitValue();
+        // the JVM still shuts down in an orderly way on SIGINT and SIGTERM
+        if (exitCode == 0 || exitCode == 128 + 2 || exitCode == 128 + 15) {
+            Files.move(dumped, cdsArchive, StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            getLog().warn("Discarding class data sharing archive dumped by Jenkins exiting with code " + exitCode);
+            Files.delete(dumped);
+        }
+    }
+
     private boolean hasSameGavAsProject(Artifact a) {
         return getProject().getGroupId().equals(a.getGroupId())
                 && getProject().getArtifactId().equals(a.getArtifactId())
                 && getProject().getVersion().equals(a.getVersion());
     }
 
-    private void copyPlugin(File src, File pluginsDir, String shortName) throws IOException {
+    private void copyPlugin(MavenArtifact plugin, File pluginsDir, String shortName, FileLinker linker)
+            throws IOException, MojoExecutionException {
+        File src = plugin.getFile();
         File dst = new File(pluginsDir, shortName + ".jpi");
         File hpi = new File(pluginsDir, shortName + ".hpi");
         if (Files.isRegularFile(hpi.toPath())) {
             getLog().warn("Moving historical " + hpi + " to *.jpi");
             Files.move(hpi.toPath(), dst.toPath(), StandardCopyOption.REPLACE_EXISTING);
         }
-        VersionNumber dstV = versionOfPlugin(dst);
-        if (versionOfPlugin(src).compareTo(dstV) < 0) {
-            getLog().info("will not overwrite " + dst + " with " + src + " because " + dstV + " is newer");
-            return;
+        if (FileLinker.isUpToDate(src.toPath(), dst.toPath())) {
+            getLog().debug("Dependency Jenkins plugin " + src + " is up to date");
+        } else {
+            VersionNumber dstV = versionOfPlugin(dst);
+            if (versionOf(plugin).compareTo(dstV) < 0) {
+                getLog().info("will not overwrite " + dst + " with " + src + " because " + dstV + " is newer");
+                return;
+            }
+            getLog().info("Copying dependency Jenkins plugin " + src);
+            linker.place(src.toPath(), dst.toPath());
         }
-        getLog().info("Copying dependency Jenkins plugin " + src);
-        FileUtils.copyFile(src, dst);
         // TODO skip .pinned file creation if Jenkins version is >= 2.0
         // pin the dependency plugin, so that even if a different version of the same plugin is bundled to Jenkins,
         // we still use the plugin as specified by the POM of the plugin.
-        Files.writeString(pluginsDir.toPath().resolve(shortName + ".jpi.pinned"), "pinned", StandardCharsets.US_ASCII);
+        Path pinned = pluginsDir.toPath().resolve(shortName + ".jpi.pinned");
+        if (!Files.isRegularFile(pinned)) {
+            Files.writeString(pinned, "pinned", StandardCharsets.US_ASCII);
+        }
         Files.deleteIfExists(
                 new File(pluginsDir, shortName + ".jpl").toPath()); // in case we used to have a snapshot dependency
     }
 
+    private static VersionNumber versionOf(MavenArtifact plugin) throws IOException, MojoExecutionException {
+        String v = plugin.getActualVersion();
+        try {
+            return new VersionNumber(v);
+        } catch (IllegalArgumentException x) {
+            throw new IOException("malformed Plugin-Version in " + plugin.getFile() + ": " + x, x);
+        }
+    }
+
     private VersionNumber versionOfPlugin(File p) throws IOException {
         if (!p.isFile()) {
             return new VersionNumber("0.0");
@@ -0,0 +1,35 @@
+package org.jenkinsci.maven.plugins.hpi;
+
+import java.util.function.Supplier;
+import org.apache.maven.execution.MavenSession;
+import org.eclipse.aether.SessionData;
+
+/**
+ * Keeps objects around for as long as the current {@link MavenSession} lives,
+ * so that every mojo execution in every module of a reactor build sees the same instance.
+ *
+ * <p>
+ * Objects are stored in the {@link SessionData} of the repository session, keyed by their class.
+ * Since the class object is specific to the plugin realm, different versions of this plugin
+ * in the same build do not see each other's objects.
+ */
+final class SessionScoped {
+
+    private SessionScoped() {}
+
+    /**
+     * Gets the instance of the given type for this session, creating it on first use.
+     */
+    static <T> T get(MavenSession session, Class<T> type, Supplier<T> factory) {
+        SessionData data = session.getRepositorySession().getData();
+        Object value = data.get(type);
+        if (value == null) {
+            value = factory.get();
+            if (!data.set(type, null, value)) {
+                // somebody else won the race
+                value = data.get(type);
+            }
+        }
+        return type.cast(value);
+    }
+}
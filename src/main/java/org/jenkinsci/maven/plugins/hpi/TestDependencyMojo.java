@@ -1,16 +1,14 @@
 package org.jenkinsci.maven.plugins.hpi;
 
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.Enumeration;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
@@ -23,21 +21,15 @@ import java.util.NavigableSet;
 import java.util.Optional;
 import java.util.Properties;
 import java.util.Set;
-import java.util.Stack;
 import java.util.TreeMap;
 import java.util.TreeSet;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
-import java.util.jar.JarInputStream;
-import java.util.jar.Manifest;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
-import org.apache.commons.io.FileUtils;
 import org.apache.maven.RepositoryUtils;
 import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.ArtifactUtils;
 import org.apache.maven.artifact.versioning.ArtifactVersion;
-import org.apache.maven.artifact.versioning.ComparableVersion;
 import org.apache.maven.artifact.versioning.DefaultArtifactVersion;
 import org.apache.maven.artifact.versioning.OverConstrainedVersionException;
 import org.apache.maven.execution.MavenSession;
@@ -60,7 +52,6 @@ import org.apache.maven.project.MavenProject;
 import org.apache.maven.project.ProjectBuildingRequest;
 import org.apache.maven.project.ProjectDependenciesResolver;
 import org.eclipse.aether.DefaultRepositorySystemSession;
-import org.eclipse.aether.RepositorySystemSession;
 import org.eclipse.aether.artifact.ArtifactTypeRegistry;
 import org.eclipse.aether.collection.CollectRequest;
 import org.eclipse.aether.collection.DependencyCollectionException;
@@ -74,6 +65,7 @@ import org.eclipse.aether.resolution.ArtifactRequest;
 import org.eclipse.aether.resolution.ArtifactResolutionException;
 import org.eclipse.aether.resolution.ArtifactResult;
 import org.eclipse.aether.util.graph.manager.DependencyManagerUtils;
+import org.jenkinsci.maven.plugins.hpi.util.Utils;
 import org.twdata.maven.mojoexecutor.MojoExecutor;
 
 /**
@@ -89,9 +81,6 @@ import org.twdata.maven.mojoexecutor.MojoExecutor;
 @SuppressFBWarnings(value = "REDOS", justification = "trusted code")
 public class TestDependencyMojo extends AbstractHpiMojo {
 
-    private static final Pattern CORE_REGEX = Pattern.compile(
-            "WEB-INF/lib/jenkins-core-([0-9.]+(?:-[0-9a-f.]+)*(?:-(?i)([a-z]+)(-)?([0-9a-f.]+)?)?(?:-(?i)([a-z]+)(-)?([0-9a-f_.]+)?)?(?:-SNAPSHOT)?)[.]jar");
-    private static final Pattern PLUGIN_REGEX = Pattern.compile("WEB-INF/plugins/([^/.]+)[.][hj]pi");
     private static final Pattern OVERRIDE_REGEX = Pattern.compile("([^:]+:[^:]+):([^:]+)");
 
     @Component
@@ -133,11 +122,66 @@ public class TestDependencyMojo extends AbstractHpiMojo {
     @Parameter(property = "upperBoundsExcludes")
     private List<String> upperBoundsExcludes;
 
-    private RequireUpperBoundDepsVisitor upperBoundDepsVisitor;
+    /**
+     * If true, dependency plugins are hard linked or, failing that, cloned into {@code test-dependencies}
+     * where the file system allows it, rather than copied.
+     * The test harness only ever reads them.
+     */
+    @Parameter(property = "hpi.linkTestDependencies", defaultValue = "false")
+    private boolean linkTestDependencies;
+
+    /**
+     * Directory in which to remember how test dependencies were resolved,
+     * keyed by the dependency model of the project and the overrides.
+     * May be shared by many builds, for example runs of the plugin compatibility tester against the same BOM,
+     * so that a later run with identical inputs skips resolution altogether.
+     * Resolutions involving snapshots are not remembered.
+     */
+    @Parameter(property = "hpi.resolutionCache")
+    private File resolutionCache;
+
+    /**
+     * If true, writes how long each phase of this goal took, along with artifact counts and cache hit rates,
+     * as JSON to {@code target/hpi-timing/resolve-test-dependencies.json}.
+     */
+    @Parameter(property = "hpi.timingReport", defaultValue = "false")
+    private boolean timingReport;
+
+    private TimingReport timings;
 
     @Override
     public void execute() throws MojoExecutionException {
-        Map<String, String> overrides = overrideVersions != null ? parseOverrides(overrideVersions) : Map.of();
+        timings = new TimingReport();
+        timings.attribute("goal", "resolve-test-dependencies");
+        timings.attribute("project", project.getId());
+        ArtifactMetadataCache metadataCache = ArtifactMetadataCache.of(session);
+        long metadataHits = metadataCache.hits();
+        long metadataMisses = metadataCache.misses();
+        timings.attribute("outcome", "failed");
+        try {
+            resolveTestDependencies();
+        } finally {
+            timings.cache(
+                    "artifact-metadata",
+                    metadataCache.hits() - metadataHits,
+                    metadataCache.misses() - metadataMisses);
+            if (timingReport) {
+                File report = new File(project.getBuild().getDirectory(), "hpi-timing/resolve-test-dependencies.json");
+                try {
+                    timings.write(report);
+                } catch (IOException e) {
+                    getLog().warn("Failed to write " + report + ": " + e);
+                }
+            }
+        }
+    }
+
+    private void resolveTestDependencies() throws MojoExecutionException {
+        Map<String, String> overrides;
+        try (TimingReport.Phase phase = timings.phase("override-parsing")) {
+            overrides = overrideVersions != null ? parseOverrides(overrideVersions) : Map.of();
+        }
+        timings.count("overrides", overrides.size());
         if (!overrides.isEmpty()) {
             getLog().info(String.format("Applying %d overrides.", Integer.valueOf(overrides.size())));
         }
@@ -145,7 +189,36 @@ public class TestDependencyMojo extends AbstractHpiMojo {
             throw new MojoExecutionException("Cannot override self");
         }
 
-        Map<String, String> bundledPlugins = overrideWar != null ? scanWar(overrideWar) : Map.of();
+        File testDir = new File(project.getBuild().getTestOutputDirectory(), "test-dependencies");
+        File indexFile = new File(testDir, "index");
+        File stateFile = new File(
+                project.getBuild().getDirectory(), "maven-status/maven-hpi-plugin/test-dependencies.properties");
+        PackagingFingerprint fingerprint;
+        List<String> changes;
+        try (TimingReport.Phase phase = timings.phase("fingerprint")) {
+            fingerprint = fingerprintResolution();
+            changes = fingerprint.changesSince(stateFile, indexFile);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to fingerprint test dependencies", e);
+        }
+        if (changes.isEmpty() && overrides.values().stream().anyMatch(ArtifactUtils::isSnapshot)) {
+            // the same snapshot version may resolve to something else by now
+            changes = List.of("snapshots are overridden");
+        }
+        if (changes.isEmpty()) {
+            if (restoreTestDependencies(fingerprint, testDir)) {
+                timings.attribute("outcome", "up-to-date");
+                return;
+            }
+            changes = List.of("test dependencies are missing or were replaced");
+        }
+        getLog().debug("Resolving test dependencies as " + String.join(", ", changes));
+
+        Map<String, String> bundledPlugins;
+        try (TimingReport.Phase phase = timings.phase("war-scan")) {
+            bundledPlugins = overrideWar != null ? scanWar(overrideWar) : Map.of();
+        }
+        timings.count("bundledPlugins", bundledPlugins.size());
         if (!bundledPlugins.isEmpty()) {
             getLog().info(String.format(
                     "Scanned contents of %s with %d bundled plugins",
@@ -170,6 +243,39 @@ public class TestDependencyMojo extends AbstractHpiMojo {
             }
         }
 
+        ResolutionCache cache = resolutionCache != null ? new ResolutionCache(resolutionCache) : null;
+        String cacheKey = null;
+        if (cache != null) {
+            ResolutionCache.Entry cached;
+            try (TimingReport.Phase phase = timings.phase("resolution-cache")) {
+                cacheKey = resolutionCacheKey(overrides);
+                cached = cacheKey != null ? cache.load(cacheKey) : null;
+            }
+            timings.cache("resolution", cached != null ? 1 : 0, cached != null ? 0 : 1);
+            if (cached != null) {
+                if (!overrides.isEmpty() || overrideWar != null) {
+                    checkNotReleasing();
+                }
+                getLog().info("Reusing test dependencies resolved from the same inputs in " + resolutionCache);
+                if (!cached.additions.isEmpty() || !cached.deletions.isEmpty() || !cached.updates.isEmpty()) {
+                    getLog().info("After resolving, additions: " + cached.additions);
+                    getLog().info("After resolving, deletions: " + cached.deletions);
+                    getLog().info("After resolving, updates: " + cached.updates);
+                }
+                placeTestDependencies(cached.plugins, testDir);
+                applyClasspath(cached.additionalClasspath, cached.dependencyExcludes);
+                saveResolution(
+                        fingerprint,
+                        stateFile,
+                        indexFile,
+                        cached.plugins.values(),
+                        cached.additionalClasspath,
+                        cached.dependencyExcludes);
+                timings.attribute("outcome", "cached");
+                return;
+            }
+        }
+
         // The effective artifacts to be used when building the plugin index and test classpath.
         Set<MavenArtifact> effectiveArtifacts;
 
@@ -181,12 +287,7 @@ public class TestDependencyMojo extends AbstractHpiMojo {
         if (overrides.isEmpty() && overrideWar == null) {
             effectiveArtifacts = getProjectArtfacts();
         } else {
-            // Under no circumstances should this code ever be executed when performing a release.
-            for (String goal : session.getGoals()) {
-                if (goal.contains("deploy")) {
-                    throw new MojoExecutionException("Cannot override dependencies when doing a release");
-                }
-            }
+            checkNotReleasing();
 
             // Create a shadow project for dependency analysis.
             MavenProject shadow = project.clone();
@@ -217,9 +318,7 @@ public class TestDependencyMojo extends AbstractHpiMojo {
                      * the model having been updated and the resolution having been cleared.
                      */
                     DependencyNode node;
-                    try {
-                        RepositorySystemSession repositorySystemSession = session.getRepositorySession();
-
+                    try (TimingReport.Phase phase = timings.phase("upper-bounds-" + i)) {
                         ArtifactTypeRegistry artifactTypeRegistry =
                                 session.getRepositorySession().getArtifactTypeRegistry();
 
@@ -241,20 +340,23 @@ public class TestDependencyMojo extends AbstractHpiMojo {
                         CollectRequest collectRequest = new CollectRequest(
                                 dependencies, managedDependencies, shadow.getRemoteProjectRepositories());
                         collectRequest.setRootArtifact(RepositoryUtils.toArtifact(shadow.getArtifact()));
-
                         node = repositorySystem
-                                .collectDependencies(repositorySystemSession, collectRequest)
+                                .collectDependencies(session.getRepositorySession(), collectRequest)
                                 .getRoot();
                     } catch (DependencyCollectionException e) {
                         throw new MojoExecutionException("Failed to analyze dependency tree for useUpperBounds", e);
                     }
-                    upperBoundDepsVisitor = new RequireUpperBoundDepsVisitor();
-                    node.accept(upperBoundDepsVisitor);
-                    String self = String.format("%s:%s", shadow.getGroupId(), shadow.getArtifactId());
-                    upperBounds = upperBoundDepsVisitor.upperBounds(upperBoundsExcludes, self);
+                    try (TimingReport.Phase phase = timings.phase("upper-bounds-" + i)) {
+                        RequireUpperBoundDepsVisitor upperBoundDepsVisitor = new RequireUpperBoundDepsVisitor();
+                        node.accept(upperBoundDepsVisitor);
+                        String self = String.format("%s:%s", shadow.getGroupId(), shadow.getArtifactId());
+                        upperBounds = upperBoundDepsVisitor.upperBounds(upperBoundsExcludes, self);
+                    }
 
                     if (upperBounds.isEmpty()) {
                         converged = true;
+                        timings.count("upperBoundsIterations", i);
+                        getLog().debug("Upper bounds analysis converged after " + i + " passes");
                     } else {
                         // Second pass: apply the results of the upper bounds analysis.
 
@@ -262,10 +364,12 @@ public class TestDependencyMojo extends AbstractHpiMojo {
                          * applyOverrides depends on resolution, so resolve again between the first pass
                          * and the second.
                          */
-                        Set<Artifact> resolved = resolveDependencies(shadow);
-                        shadow.setArtifacts(resolved);
+                        try (TimingReport.Phase phase = timings.phase("upper-bounds-" + i)) {
+                            Set<Artifact> resolved = resolveDependencies(shadow);
+                            shadow.setArtifacts(resolved);
 
-                        applyOverrides(upperBounds, Map.of(), true, shadow, getLog());
+                            applyOverrides(upperBounds, Map.of(), true, shadow, getLog());
+                        }
                     }
                 }
             } else if (!upperBoundsExcludes.isEmpty()) {
@@ -281,7 +385,10 @@ public class TestDependencyMojo extends AbstractHpiMojo {
              * Anything that was added in the new resolution needs to be added to the test
              * classpath.
              */
-            Set<Artifact> resolved = resolveDependencies(shadow);
+            Set<Artifact> resolved;
+            try (TimingReport.Phase phase = timings.phase("final-resolution")) {
+                resolved = resolveDependencies(shadow);
+            }
             Map<String, String> newResolution = new HashMap<>();
             Set<Artifact> self = new HashSet<>();
             for (Artifact artifact : resolved) {
@@ -341,33 +448,43 @@ public class TestDependencyMojo extends AbstractHpiMojo {
             }
         }
 
-        copyTestDependencies(effectiveArtifacts);
+        timings.count("effectiveArtifacts", effectiveArtifacts.size());
+        timings.count("additions", additions.size());
+        timings.count("deletions", deletions.size());
+        timings.count("updates", updates.size());
+        Map<String, Artifact> plugins = copyTestDependencies(effectiveArtifacts, testDir);
+        timings.count("plugins", plugins.size());
+        timings.attribute("outcome", "resolved");
 
+        List<String> additionalClasspathElements = new LinkedList<>();
+        NavigableSet<String> classpathDependencyExcludes = new TreeSet<>();
         if (!additions.isEmpty() || !deletions.isEmpty() || !updates.isEmpty()) {
-            List<String> additionalClasspathElements = new LinkedList<>();
             NavigableMap<String, String> includes = new TreeMap<>();
             includes.putAll(additions);
             includes.putAll(updates);
+            /*
+             * We cannot use MavenProject.getArtifactMap since we may have multiple dependencies
+             * of different classifiers.
+             */
+            Map<String, List<MavenArtifact>> artifactsByKey = new HashMap<>();
+            for (MavenArtifact a : effectiveArtifacts) {
+                artifactsByKey
+                        .computeIfAbsent(a.getGroupId() + ":" + a.getArtifactId(), k -> new ArrayList<>())
+                        .add(a);
+            }
+            List<String> missing = new ArrayList<>();
             for (Map.Entry<String, String> entry : includes.entrySet()) {
                 String key = entry.getKey();
-                String[] groupArt = key.split(":");
-                String groupId = groupArt[0];
-                String artifactId = groupArt[1];
                 String version = entry.getValue();
-                /*
-                 * We cannot use MavenProject.getArtifactMap since we may have multiple dependencies
-                 * of different classifiers.
-                 */
-                boolean found = false;
-                // Yeah, this is O(n²)... deal with it!
-                for (MavenArtifact a : effectiveArtifacts) {
-                    if (!a.getGroupId().equals(groupId) || !a.getArtifactId().equals(artifactId)) {
-                        continue;
-                    }
+                List<MavenArtifact> artifacts = artifactsByKey.get(key);
+                if (artifacts == null) {
+                    missing.add(key);
+                    continue;
+                }
+                for (MavenArtifact a : artifacts) {
                     if (!a.getVersion().equals(version)) {
                         throw new AssertionError("should never happen");
                     }
-                    found = true;
                     if (a.getArtifactHandler().isAddedToClasspath()) {
                         /*
                          * Everything is added to the test classpath, so there is no need to check
@@ -376,78 +493,290 @@ public class TestDependencyMojo extends AbstractHpiMojo {
                         additionalClasspathElements.add(a.getFile().getAbsolutePath());
                     }
                 }
-                if (!found) {
-                    throw new MojoExecutionException("could not find dependency " + key);
-                }
+            }
+            if (!missing.isEmpty()) {
+                throw new MojoExecutionException("could not find "
+                        + (missing.size() == 1 ? "dependency " : "dependencies ")
+                        + String.join(", ", missing));
             }
 
-            NavigableSet<String> classpathDependencyExcludes = new TreeSet<>();
             classpathDependencyExcludes.addAll(deletions.keySet());
             classpathDependencyExcludes.addAll(updates.keySet());
-
-            Properties properties = project.getProperties();
-            if (getLog().isDebugEnabled()) {
-                getLog().debug(String.format(
-                        "Replacing POM-defined classpath elements %s with %s",
-                        classpathDependencyExcludes, additionalClasspathElements));
+        }
+        applyClasspath(additionalClasspathElements, classpathDependencyExcludes);
+        saveResolution(
+                fingerprint,
+                stateFile,
+                indexFile,
+                plugins.values().stream().map(Artifact::getFile).collect(Collectors.toList()),
+                additionalClasspathElements,
+                classpathDependencyExcludes);
+
+        if (cacheKey != null
+                && plugins.values().stream().noneMatch(Artifact::isSnapshot)
+                && additions.values().stream().noneMatch(ArtifactUtils::isSnapshot)
+                && updates.values().stream().noneMatch(ArtifactUtils::isSnapshot)) {
+            ResolutionCache.Entry entry = new ResolutionCache.Entry();
+            entry.additions.putAll(additions);
+            entry.deletions.putAll(deletions);
+            entry.updates.putAll(updates);
+            for (Artifact artifact : plugins.values()) {
+                entry.plugins.put(artifact.getArtifactId(), artifact.getFile());
+            }
+            entry.additionalClasspath.addAll(additionalClasspathElements);
+            entry.dependencyExcludes.addAll(classpathDependencyExcludes);
+            try {
+                cache.store(cacheKey, entry);
+            } catch (IOException e) {
+                getLog().warn("Failed to remember test dependencies in " + resolutionCache + ": " + e);
             }
-            // cf. http://maven.apache.org/surefire/maven-surefire-plugin/test-mojo.html
-            appendEntries("maven.test.additionalClasspath", additionalClasspathElements, properties);
-            appendEntries("maven.test.dependency.excludes", classpathDependencyExcludes, properties);
         }
     }
 
-    private void copyTestDependencies(Set<MavenArtifact> mavenArtifacts) throws MojoExecutionException {
-        File testDir = new File(project.getBuild().getTestOutputDirectory(), "test-dependencies");
+    /**
+     * Points surefire to the classpath adjustments made necessary by overrides.
+     */
+    private void applyClasspath(List<String> additionalClasspathElements, Collection<String> dependencyExcludes) {
+        if (additionalClasspathElements.isEmpty() && dependencyExcludes.isEmpty()) {
+            return;
+        }
+        if (getLog().isDebugEnabled()) {
+            getLog().debug(String.format(
+                    "Replacing POM-defined classpath elements %s with %s",
+                    dependencyExcludes, additionalClasspathElements));
+        }
+        // cf. http://maven.apache.org/surefire/maven-surefire-plugin/test-mojo.html
+        Properties properties = project.getProperties();
+        appendEntries("maven.test.additionalClasspath", additionalClasspathElements, properties);
+        appendEntries("maven.test.dependency.excludes", dependencyExcludes, properties);
+    }
+
+    private static void saveResolution(
+            PackagingFingerprint fingerprint,
+            File stateFile,
+            File indexFile,
+            Collection<File> pluginFiles,
+            Collection<String> additionalClasspathElements,
+            Collection<String> dependencyExcludes)
+            throws MojoExecutionException {
+        fingerprint.record("additionalClasspath", String.join(",", additionalClasspathElements));
+        fingerprint.record("dependencyExcludes", String.join(",", dependencyExcludes));
+        List<String> sources = new ArrayList<>();
+        for (File pluginFile : pluginFiles) {
+            sources.add(describeSource(pluginFile));
+        }
+        for (String element : additionalClasspathElements) {
+            sources.add(describeSource(new File(element)));
+        }
+        fingerprint.record("sources", String.join("\n", sources));
         try {
-            Files.createDirectories(testDir.toPath());
+            fingerprint.save(stateFile, indexFile);
         } catch (IOException e) {
-            throw new MojoExecutionException("Failed to create directories for '" + testDir + "'", e);
+            throw new MojoExecutionException("Failed to record test dependencies", e);
         }
+    }
 
-        ProjectBuildingRequest buildingRequest = new DefaultProjectBuildingRequest(session.getProjectBuildingRequest());
-        buildingRequest.setRemoteRepositories(project.getRemoteArtifactRepositories());
-        List<RemoteRepository> remoteRepositories = RepositoryUtils.toRepos(buildingRequest.getRemoteRepositories());
-
-        List<ArtifactRequest> artifactRequests = new ArrayList<>();
-        for (MavenArtifact mavenArtifact : mavenArtifacts) {
-            if (!mavenArtifact.isPlugin(getLog())) {
-                continue;
+    /**
+     * Describes the inputs of resolution independently of where the project lives,
+     * so that builds of the same project in different places can share a {@link #resolutionCache}.
+     *
+     * @return null if the resolution should not be cached, because it involves snapshots
+     */
+    @CheckForNull
+    private String resolutionCacheKey(Map<String, String> overrides) throws MojoExecutionException {
+        List<String> lines = new ArrayList<>();
+        lines.add(project.getId());
+        for (Dependency d : project.getDependencies()) {
+            lines.add("model " + describe(d));
+        }
+        DependencyManagement dependencyManagement = project.getDependencyManagement();
+        if (dependencyManagement != null) {
+            for (Dependency d : dependencyManagement.getDependencies()) {
+                lines.add("dependencyManagement " + describe(d));
             }
-
-            String artifactId;
+        }
+        for (Artifact a : project.getArtifacts()) {
+            if (a.isSnapshot()) {
+                return null;
+            }
+            lines.add("resolution " + a.getId());
+        }
+        for (Map.Entry<String, String> override : new TreeMap<>(overrides).entrySet()) {
+            if (ArtifactUtils.isSnapshot(override.getValue())) {
+                return null;
+            }
+            lines.add("override " + override.getKey() + ":" + override.getValue());
+        }
+        if (overrideWar != null) {
             try {
-                artifactId = mavenArtifact.getActualArtifactId();
+                lines.add("overrideWar " + BundledPlugins.checksum(session, overrideWar));
             } catch (IOException e) {
-                throw new MojoExecutionException("Failed to resolve " + mavenArtifact.getId(), e);
+                throw new MojoExecutionException("Failed to scan " + overrideWar, e);
+            }
+        }
+        lines.add("upperBounds " + useUpperBounds + " " + new TreeSet<>(upperBoundsExcludes));
+        return ResolutionCache.key(lines);
+    }
+
+    private void checkNotReleasing() throws MojoExecutionException {
+        // Under no circumstances should this code ever be executed when performing a release.
+        for (String goal : session.getGoals()) {
+            if (goal.contains("deploy")) {
+                throw new MojoExecutionException("Cannot override dependencies when doing a release");
             }
-            if (artifactId == null) {
-                getLog().debug("Skipping null artifactID with classifier " + mavenArtifact.getClassifier());
-                continue;
+        }
+    }
+
+    /**
+     * Summarizes what the test dependencies are resolved from:
+     * the dependency model and its resolution, the overrides and the configuration of this goal.
+     */
+    private PackagingFingerprint fingerprintResolution() throws IOException {
+        PackagingFingerprint fingerprint = new PackagingFingerprint();
+        for (Dependency d : project.getDependencies()) {
+            fingerprint.value("model", describe(d));
+        }
+        DependencyManagement dependencyManagement = project.getDependencyManagement();
+        if (dependencyManagement != null) {
+            for (Dependency d : dependencyManagement.getDependencies()) {
+                fingerprint.value("dependencyManagement", describe(d));
             }
+        }
+        for (Artifact a : project.getArtifacts()) {
+            fingerprint.value("resolution", a.getId() + " " + a.getDependencyTrail());
+            fingerprint.file("resolution", a.getFile());
+        }
+        fingerprint.value("overrides", overrideVersions + " " + useUpperBounds + " " + upperBoundsExcludes);
+        fingerprint.value(
+                "overrideWar",
+                overrideWar != null
+                        ? overrideWar.getAbsolutePath() + " " + BundledPlugins.checksum(session, overrideWar)
+                        : null);
+        fingerprint.value("configuration", String.valueOf(linkTestDependencies));
+        return fingerprint;
+    }
 
-            // Use the descriptor to respect relocations.
-            ArtifactDescriptorRequest descriptorRequest;
-            try {
-                descriptorRequest = new ArtifactDescriptorRequest(
-                        RepositoryUtils.toArtifact(mavenArtifact.getHpi().artifact), remoteRepositories, null);
-            } catch (IOException e) {
-                throw new MojoExecutionException("Failed to resolve " + mavenArtifact.getId(), e);
+    /**
+     * Describes a file test dependencies were taken from, so that replacing it,
+     * as reinstalling a snapshot into the local repository does, is noticed.
+     */
+    private static String describeSource(File file) {
+        return file.length() + " " + file.lastModified() + " " + file.getAbsolutePath();
+    }
+
+    private static String describe(Dependency d) {
+        return d.getManagementKey() + ":" + d.getVersion() + ":" + d.getScope() + ":" + d.isOptional() + ":"
+                + d.getExclusions().stream()
+                        .map(e -> e.getGroupId() + ":" + e.getArtifactId())
+                        .collect(Collectors.joining(","));
+    }
+
+    /**
+     * Reuses the outcome of the previous run, which was resolved from the same inputs.
+     *
+     * @return false if some of the files it refers to are gone or were replaced
+     */
+    private boolean restoreTestDependencies(PackagingFingerprint fingerprint, File testDir)
+            throws MojoExecutionException {
+        List<String> ids;
+        try {
+            ids = Files.readAllLines(new File(testDir, "index").toPath(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            return false;
+        }
+        for (String id : ids) {
+            if (!id.isEmpty() && !new File(testDir, id + ".hpi").isFile()) {
+                return false;
             }
-            ArtifactDescriptorResult descriptorResult;
-            try {
-                descriptorResult = repositorySystem.readArtifactDescriptor(
-                        buildingRequest.getRepositorySession(), descriptorRequest);
-            } catch (ArtifactDescriptorException e) {
-                throw new MojoExecutionException("Failed to read artifact descriptor for " + mavenArtifact.getId(), e);
+        }
+        String additionalClasspath = fingerprint.recordedBefore("additionalClasspath");
+        String dependencyExcludes = fingerprint.recordedBefore("dependencyExcludes");
+        String sources = fingerprint.recordedBefore("sources");
+        if (additionalClasspath == null || dependencyExcludes == null || sources == null) {
+            return false;
+        }
+        for (String source : sources.split("\n")) {
+            String[] parts = source.split(" ", 3);
+            if (!source.isEmpty() && (parts.length < 3 || !describeSource(new File(parts[2])).equals(source))) {
+                getLog().debug("Test dependency " + source + " was replaced");
+                return false;
+            }
+        }
+        List<String> additionalClasspathElements =
+                additionalClasspath.isEmpty() ? List.of() : List.of(additionalClasspath.split(","));
+        for (String element : additionalClasspathElements) {
+            if (!new File(element).exists()) {
+                return false;
+            }
+        }
+        if ((overrideVersions != null && !overrideVersions.isEmpty()) || overrideWar != null) {
+            checkNotReleasing();
+        }
+
+        getLog().info("Test dependencies are up to date");
+        applyClasspath(
+                additionalClasspathElements,
+                dependencyExcludes.isEmpty() ? List.of() : List.of(dependencyExcludes.split(",")));
+        return true;
+    }
+
+    /**
+     * Resolves the plugins among the given artifacts and places them in {@code test-dependencies}.
+     *
+     * @return the resolved plugins, keyed by {@code groupId:artifactId}
+     */
+    private Map<String, Artifact> copyTestDependencies(Set<MavenArtifact> mavenArtifacts, File testDir)
+            throws MojoExecutionException {
+        ProjectBuildingRequest buildingRequest = new DefaultProjectBuildingRequest(session.getProjectBuildingRequest());
+        buildingRequest.setRemoteRepositories(project.getRemoteArtifactRepositories());
+        List<RemoteRepository> remoteRepositories = RepositoryUtils.toRepos(buildingRequest.getRemoteRepositories());
+
+        List<ArtifactDescriptorRequest> descriptorRequests = new ArrayList<>();
+        try (TimingReport.Phase phase = timings.phase("plugin-detection")) {
+            for (MavenArtifact mavenArtifact : mavenArtifacts) {
+                if (!mavenArtifact.isPlugin(getLog())) {
+                    continue;
+                }
+
+                String artifactId;
+                try {
+                    artifactId = mavenArtifact.getActualArtifactId();
+                } catch (IOException e) {
+                    throw new MojoExecutionException("Failed to resolve " + mavenArtifact.getId(), e);
+                }
+                if (artifactId == null) {
+                    getLog().debug("Skipping null artifactID with classifier " + mavenArtifact.getClassifier());
+                    continue;
+                }
+
+                // Use the descriptor to respect relocations.
+                try {
+                    descriptorRequests.add(new ArtifactDescriptorRequest(
+                            RepositoryUtils.toArtifact(mavenArtifact.getHpi().artifact), remoteRepositories, null));
+                } catch (IOException e) {
+                    throw new MojoExecutionException("Failed to resolve " + mavenArtifact.getId(), e);
+                }
             }
-            ArtifactRequest artifactRequest =
-                    new ArtifactRequest(descriptorResult.getArtifact(), remoteRepositories, null);
-            artifactRequests.add(artifactRequest);
+        }
+
+        // Descriptors are read one by one, each possibly from a remote repository, so read them concurrently.
+        List<ArtifactDescriptorResult> descriptorResults;
+        try (TimingReport.Phase phase = timings.phase("descriptor-reads")) {
+            descriptorResults = Utils.mapInParallel(
+                    descriptorRequests,
+                    getThreads(),
+                    r -> repositorySystem.readArtifactDescriptor(buildingRequest.getRepositorySession(), r));
+        } catch (ArtifactDescriptorException e) {
+            throw new MojoExecutionException(
+                    "Failed to read artifact descriptor for " + e.getResult().getRequest().getArtifact(), e);
+        }
+        List<ArtifactRequest> artifactRequests = new ArrayList<>();
+        for (ArtifactDescriptorResult descriptorResult : descriptorResults) {
+            artifactRequests.add(new ArtifactRequest(descriptorResult.getArtifact(), remoteRepositories, null));
         }
 
         List<ArtifactResult> artifactResults;
-        try {
+        try (TimingReport.Phase phase = timings.phase("artifact-resolution")) {
             artifactResults =
                     repositorySystem.resolveArtifacts(buildingRequest.getRepositorySession(), artifactRequests);
         } catch (ArtifactResolutionException e) {
@@ -485,7 +814,7 @@ public class TestDependencyMojo extends AbstractHpiMojo {
                     new DefaultRepositorySystemSession(oldRepositorySession);
             newRepositorySession.setWorkspaceReader(null);
             newRepositorySession.setReadOnly();
-            try {
+            try (TimingReport.Phase phase = timings.phase("artifact-resolution")) {
                 artifactResults = repositorySystem.resolveArtifacts(newRepositorySession, artifactRequests);
             } catch (ArtifactResolutionException e) {
                 throw new MojoExecutionException(
@@ -502,18 +831,39 @@ public class TestDependencyMojo extends AbstractHpiMojo {
             }
         }
 
-        try (BufferedWriter w = Files.newBufferedWriter(testDir.toPath().resolve("index"), StandardCharsets.UTF_8)) {
-            for (Artifact artifact : artifactMap.values()) {
-                getLog().debug("Copying " + artifact.getGroupId() + ":" + artifact.getArtifactId() + ":"
-                        + artifact.getVersion() + " as a test dependency");
-                File dst = new File(testDir, artifact.getArtifactId() + ".hpi");
-                FileUtils.copyFile(artifact.getFile(), dst);
-                w.write(artifact.getArtifactId());
-                w.newLine();
+        Map<String, File> plugins = new LinkedHashMap<>();
+        for (Artifact artifact : artifactMap.values()) {
+            getLog().debug("Copying " + artifact.getGroupId() + ":" + artifact.getArtifactId() + ":"
+                    + artifact.getVersion() + " as a test dependency");
+            plugins.put(artifact.getArtifactId(), artifact.getFile());
+        }
+        placeTestDependencies(plugins, testDir);
+        return artifactMap;
+    }
+
+    /**
+     * Places plugin files in {@code test-dependencies} and lists them in its index.
+     *
+     * @param plugins plugin files keyed by artifact ID
+     */
+    private void placeTestDependencies(Map<String, File> plugins, File testDir) throws MojoExecutionException {
+        FileLinker linker = new FileLinker(linkTestDependencies, getLog());
+        StringBuilder index = new StringBuilder();
+        try (TimingReport.Phase phase = timings.phase("copy")) {
+            Files.createDirectories(testDir.toPath());
+            for (Map.Entry<String, File> plugin : plugins.entrySet()) {
+                File dst = new File(testDir, plugin.getKey() + ".hpi");
+                linker.place(plugin.getValue().toPath(), dst.toPath());
+                index.append(plugin.getKey()).append(System.lineSeparator());
             }
+            // the index is on the test classpath, which incremental test runners and IDEs watch for changes
+            Utils.writeIfChanged(
+                    testDir.toPath().resolve("index"), index.toString().getBytes(StandardCharsets.UTF_8));
         } catch (IOException e) {
             throw new MojoExecutionException("Failed to copy dependency plugins", e);
         }
+        linker.report(timings);
+        getLog().info("Test dependencies: " + linker);
     }
 
     private static void appendEntries(String property, Collection<String> additions, Properties properties) {
@@ -539,50 +889,20 @@ public class TestDependencyMojo extends AbstractHpiMojo {
      */
     private Map<String, String> scanWar(File war) throws MojoExecutionException {
         Map<String, String> overrides = new HashMap<>();
-        try (JarFile jf = new JarFile(war)) {
-            Enumeration<JarEntry> entries = jf.entries();
-            String coreVersion = null;
-            while (entries.hasMoreElements()) {
-                JarEntry entry = entries.nextElement();
-                String name = entry.getName();
-                Matcher m = CORE_REGEX.matcher(name);
-                if (m.matches()) {
-                    if (coreVersion != null) {
-                        throw new MojoExecutionException("More than 1 jenkins-core JAR in " + war);
-                    }
-                    coreVersion = m.group(1);
+        try {
+            BundledPlugins bundled = BundledPlugins.of(session, war, getThreads(), getLog());
+            String self = String.format("%s:%s", project.getGroupId(), project.getArtifactId());
+            for (Map.Entry<String, String> plugin : bundled.plugins.entrySet()) {
+                String key = plugin.getKey();
+                String version = plugin.getValue();
+                if (version.endsWith("-SNAPSHOT")) {
+                    getLog().warn("WAR contains a SNAPSHOT of " + key + "; build will not be fully repeatable");
                 }
-                m = PLUGIN_REGEX.matcher(name);
-                if (m.matches()) {
-                    try (InputStream is = jf.getInputStream(entry);
-                            JarInputStream jis = new JarInputStream(is)) {
-                        Manifest manifest = jis.getManifest();
-                        String groupId = manifest.getMainAttributes().getValue("Group-Id");
-                        if (groupId == null) {
-                            throw new IllegalArgumentException("Failed to determine group ID for " + name);
-                        }
-                        String artifactId = manifest.getMainAttributes().getValue("Short-Name");
-                        if (artifactId == null) {
-                            throw new IllegalArgumentException("Failed to determine artifact ID for " + name);
-                        }
-                        String version = manifest.getMainAttributes().getValue("Plugin-Version");
-                        if (version == null) {
-                            throw new IllegalArgumentException("Failed to determine version for " + name);
-                        }
-                        // handle any extra info in snapshots e.g. " (private-abcd1234-username)"
-                        version = version.replaceFirst(" [(].+[)]$", "");
-                        if (version.endsWith("-SNAPSHOT")) {
-                            getLog().warn("WAR contains a SNAPSHOT of " + groupId + ":" + artifactId
-                                    + "; build will not be fully repeatable");
-                        }
-                        String key = String.format("%s:%s", groupId, artifactId);
-                        String self = String.format("%s:%s", project.getGroupId(), project.getArtifactId());
-                        if (!key.equals(self)) {
-                            overrides.put(key, version);
-                        }
-                    }
+                if (!key.equals(self)) {
+                    overrides.put(key, version);
                 }
             }
+            String coreVersion = bundled.coreVersion;
 
             /*
              * It is tempting to try and avoid the requirement for jenkins.version here and simply
@@ -819,201 +1139,144 @@ public class TestDependencyMojo extends AbstractHpiMojo {
     }
 
     // Adapted from RequireUpperBoundDeps @ 78488535e0cfc37e26707c12d944ff8437b94fc4.
-    private class RequireUpperBoundDepsVisitor implements DependencyVisitor, ParentNodeProvider {
+    private class RequireUpperBoundDepsVisitor implements DependencyVisitor {
 
-        private final ParentsVisitor parentsVisitor = new ParentsVisitor();
+        /**
+         * Nodes from the root to the node being visited.
+         */
+        private final List<DependencyNode> path = new ArrayList<>();
 
-        private final Map<String, List<DependencyNodeHopCountPair>> keyToPairsMap = new HashMap<>();
+        /**
+         * For each key, the nearest occurrence of each version, nearest meaning the fewest hops from the root
+         * and then the first visited.
+         * Versions are premanaged versions where dependency management applied.
+         */
+        private final Map<String, Map<String, Occurrence>> keyToOccurrences = new HashMap<>();
+
+        private int visited;
 
         @Override
         public boolean visitEnter(DependencyNode node) {
-            parentsVisitor.visitEnter(node);
-            DependencyNodeHopCountPair pair = new DependencyNodeHopCountPair(node, this);
-            String key = pair.constructKey();
-
-            keyToPairsMap.computeIfAbsent(key, k1 -> new ArrayList<>()).add(pair);
-            keyToPairsMap.get(key).sort(DependencyNodeHopCountPair::compareTo);
+            int hopCount = path.size();
+            path.add(node);
+            org.eclipse.aether.artifact.Artifact artifact = node.getArtifact();
+            String version = DependencyManagerUtils.getPremanagedVersion(node);
+            if (version == null) {
+                version = artifact.getBaseVersion();
+            }
+            Map<String, Occurrence> occurrences = keyToOccurrences.computeIfAbsent(
+                    artifact.getGroupId() + ":" + artifact.getArtifactId(), k -> new LinkedHashMap<>());
+            Occurrence nearest = occurrences.get(version);
+            if (nearest == null || hopCount < nearest.hopCount()) {
+                // only copy the path when it may be reported
+                occurrences.put(version, new Occurrence(List.copyOf(path), hopCount, visited));
+            }
+            visited++;
             return true;
         }
 
         @Override
         public boolean visitLeave(DependencyNode node) {
-            return parentsVisitor.visitLeave(node);
+            path.remove(path.size() - 1);
+            return true;
         }
 
         // added for TestDependencyMojo in place of getConflicts/containsConflicts
         public Map<String, String> upperBounds(List<String> upperBoundsExcludes, String self) {
             Map<String, String> r = new HashMap<>();
-            for (List<DependencyNodeHopCountPair> pairs : keyToPairsMap.values()) {
-                DependencyNodeHopCountPair resolvedPair = pairs.get(0);
-                ArtifactVersion resolvedVersion = resolvedPair.extractArtifactVersion(false);
-
-                for (DependencyNodeHopCountPair pair : pairs) {
-                    ArtifactVersion version = pair.extractArtifactVersion(true);
+            for (Map.Entry<String, Map<String, Occurrence>> entry : keyToOccurrences.entrySet()) {
+                String key = entry.getKey();
+                if (key.equals(self)) {
+                    continue;
+                }
+                List<Occurrence> occurrences = new ArrayList<>(entry.getValue().values());
+                if (occurrences.size() == 1
+                        && DependencyManagerUtils.getPremanagedVersion(occurrences.get(0).node()) == null) {
+                    // a single unmanaged version cannot exceed itself
+                    continue;
+                }
+                occurrences.sort(Comparator.comparingInt(Occurrence::hopCount).thenComparingInt(Occurrence::order));
+                Occurrence resolved = occurrences.get(0);
+                ArtifactVersion resolvedVersion = extractArtifactVersion(resolved.node(), false);
+                for (Occurrence occurrence : occurrences) {
+                    ArtifactVersion version = extractArtifactVersion(occurrence.node(), true);
                     if (resolvedVersion.compareTo(version) < 0) {
-                        Artifact artifact = toArtifact(resolvedPair.node);
-                        String key = toKey(artifact);
-                        if (!key.equals(self)
-                                && (!r.containsKey(key)
-                                        || new ComparableVersion(version.toString())
-                                                        .compareTo(new ComparableVersion(r.get(key)))
-                                                > 1)) {
-                            if (upperBoundsExcludes.contains(key)) {
-                                getLog().info("Ignoring requireUpperBoundDeps in " + key);
-                            } else {
-                                getLog().info(buildErrorMessage(pairs.stream()
-                                                .map(DependencyNodeHopCountPair::getNode)
-                                                .collect(Collectors.toList()))
-                                        .trim());
-                                getLog().info(String.format(
-                                        "for %s, upper bounds forces an upgrade from %s to %s",
-                                        key, resolvedVersion, version));
-                                r.put(key, version.toString());
-                            }
+                        if (upperBoundsExcludes.contains(key)) {
+                            getLog().info("Ignoring requireUpperBoundDeps in " + key);
+                        } else {
+                            getLog().info(buildErrorMessage(occurrences).trim());
+                            getLog().info(String.format(
+                                    "for %s, upper bounds forces an upgrade from %s to %s",
+                                    key, resolvedVersion, version));
+                            r.put(key, version.toString());
                         }
+                        // the nearest greater version wins
+                        break;
                     }
                 }
             }
             return r;
         }
-
-        @Override
-        public DependencyNode getParent(DependencyNode node) {
-            return parentsVisitor.getParent(node);
-        }
-    }
-
-    private static class DependencyNodeHopCountPair implements Comparable<DependencyNodeHopCountPair> {
-        private final DependencyNode node;
-        private int hopCount;
-        private final ParentNodeProvider parentNodeProvider;
-
-        private DependencyNodeHopCountPair(DependencyNode node, ParentNodeProvider parentNodeProvider) {
-            this.parentNodeProvider = parentNodeProvider;
-            this.node = node;
-            countHops();
-        }
-
-        private void countHops() {
-            hopCount = 0;
-            DependencyNode parent = parentNodeProvider.getParent(node);
-            while (parent != null) {
-                hopCount++;
-                parent = parentNodeProvider.getParent(parent);
-            }
-        }
-
-        private String constructKey() {
-            Artifact artifact = toArtifact(node);
-            return toKey(artifact);
-        }
-
-        public DependencyNode getNode() {
-            return node;
-        }
-
-        private ArtifactVersion extractArtifactVersion(boolean usePremanagedVersion) {
-            if (usePremanagedVersion && DependencyManagerUtils.getPremanagedVersion(node) != null) {
-                return new DefaultArtifactVersion(DependencyManagerUtils.getPremanagedVersion(node));
-            }
-
-            Artifact artifact = toArtifact(node);
-            String version = artifact.getBaseVersion();
-            if (version != null) {
-                return new DefaultArtifactVersion(version);
-            }
-            try {
-                return artifact.getSelectedVersion();
-            } catch (OverConstrainedVersionException e) {
-                throw new RuntimeException("Version ranges problem with " + node.getArtifact(), e);
-            }
-        }
-
-        public int getHopCount() {
-            return hopCount;
-        }
-
-        @Override
-        public int compareTo(DependencyNodeHopCountPair other) {
-            return Integer.compare(hopCount, other.getHopCount());
-        }
     }
 
     /**
-     * Provides the information about {@link DependencyNode} parent nodes
+     * Where a version of an artifact was found in the dependency graph.
+     *
+     * @param path the nodes from the root to this one
+     * @param hopCount the distance from the root
+     * @param order the position of the node in visiting order
      */
-    private interface ParentNodeProvider {
-        /**
-         * Returns the parent node of the given node
-         * @param node node to get the information for
-         * @return parent node or {@code null} is no information is known
-         */
-        DependencyNode getParent(DependencyNode node);
+    private record Occurrence(List<DependencyNode> path, int hopCount, int order) {
+        DependencyNode node() {
+            return path.get(path.size() - 1);
+        }
     }
 
-    /**
-     * A {@link DependencyVisitor} building a map of parent nodes
-     */
-    private static class ParentsVisitor implements DependencyVisitor, ParentNodeProvider {
-
-        private final Map<DependencyNode, DependencyNode> parents = new HashMap<>();
-        private final Stack<DependencyNode> parentStack = new Stack<>();
-
-        @Override
-        public DependencyNode getParent(DependencyNode node) {
-            return parents.get(node);
+    private static ArtifactVersion extractArtifactVersion(DependencyNode node, boolean usePremanagedVersion) {
+        if (usePremanagedVersion && DependencyManagerUtils.getPremanagedVersion(node) != null) {
+            return new DefaultArtifactVersion(DependencyManagerUtils.getPremanagedVersion(node));
         }
 
-        @Override
-        public boolean visitEnter(DependencyNode node) {
-            parents.put(node, parentStack.isEmpty() ? null : parentStack.peek());
-            parentStack.push(node);
-            return true;
+        Artifact artifact = toArtifact(node);
+        String version = artifact.getBaseVersion();
+        if (version != null) {
+            return new DefaultArtifactVersion(version);
         }
-
-        @Override
-        public boolean visitLeave(DependencyNode node) {
-            parentStack.pop();
-            return true;
+        try {
+            return artifact.getSelectedVersion();
+        } catch (OverConstrainedVersionException e) {
+            throw new RuntimeException("Version ranges problem with " + node.getArtifact(), e);
         }
     }
 
-    private String buildErrorMessage(List<DependencyNode> conflict) {
+    private static String buildErrorMessage(List<Occurrence> conflict) {
         StringBuilder errorMessage = new StringBuilder();
         errorMessage
                 .append("Require upper bound dependencies error for ")
-                .append(getFullArtifactName(conflict.get(0), false))
+                .append(getFullArtifactName(conflict.get(0).node(), false))
                 .append(" paths to dependency are:")
                 .append(System.lineSeparator());
         if (conflict.size() > 0) {
             errorMessage.append(buildTreeString(conflict.get(0)));
         }
-        for (DependencyNode node : conflict.subList(1, conflict.size())) {
+        for (Occurrence occurrence : conflict.subList(1, conflict.size())) {
             errorMessage.append("and").append(System.lineSeparator());
-            errorMessage.append(buildTreeString(node));
+            errorMessage.append(buildTreeString(occurrence));
         }
         return errorMessage.toString();
     }
 
-    private StringBuilder buildTreeString(DependencyNode node) {
-        List<String> loc = new ArrayList<>();
-        DependencyNode currentNode = node;
-        while (currentNode != null) {
-            StringBuilder line = new StringBuilder(getFullArtifactName(currentNode, false));
-
-            if (DependencyManagerUtils.getPremanagedVersion(currentNode) != null) {
-                line.append(" (managed) <-- ");
-                line.append(getFullArtifactName(currentNode, true));
-            }
-
-            loc.add(line.toString());
-            currentNode = upperBoundDepsVisitor.getParent(currentNode);
-        }
-        Collections.reverse(loc);
+    private static StringBuilder buildTreeString(Occurrence occurrence) {
         StringBuilder builder = new StringBuilder();
-        for (int i = 0; i < loc.size(); i++) {
+        List<DependencyNode> path = occurrence.path();
+        for (int i = 0; i < path.size(); i++) {
+            DependencyNode currentNode = path.get(i);
             builder.append("  ".repeat(i));
-            builder.append("+-").append(loc.get(i));
+            builder.append("+-").append(getFullArtifactName(currentNode, false));
+            if (DependencyManagerUtils.getPremanagedVersion(currentNode) != null) {
+                builder.append(" (managed) <-- ");
+                builder.append(getFullArtifactName(currentNode, true));
+            }
             builder.append(System.lineSeparator());
         }
         return builder;
@@ -0,0 +1,155 @@
+package org.jenkinsci.maven.plugins.hpi;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Collects how long the phases of a goal took, along with some counts, and writes them out as JSON.
+ *
+ * <p>
+ * Phases are timed with {@link #phase}; a phase entered several times accumulates its time.
+ * The report is meant for tooling comparing many builds, so its layout is kept flat and stable:
+ * <pre>{@code
+ * {
+ *   "goal": "resolve-test-dependencies",
+ *   "project": "org.jenkins-ci.plugins:foo:1.0",
+ *   "outcome": "resolved",
+ *   "totalMillis": 1234.5,
+ *   "phases": {"war-scan": 12.3, ...},
+ *   "counts": {"plugins": 42, ...},
+ *   "caches": {"artifact-metadata": {"hits": 10, "misses": 2, "hitRate": 0.833}, ...}
+ * }
+ * }</pre>
+ */
+final class TimingReport {
+
+    private final long start = System.nanoTime();
+
+    private final Map<String, String> attributes = new LinkedHashMap<>();
+
+    private final Map<String, Long> phases = new LinkedHashMap<>();
+
+    private final Map<String, Long> counts = new LinkedHashMap<>();
+
+    private final Map<String, long[]> caches = new LinkedHashMap<>();
+
+    /**
+     * A phase being timed, to be closed when it is over.
+     */
+    final class Phase implements AutoCloseable {
+        private final String name;
+        private final long started = System.nanoTime();
+
+        private Phase(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void close() {
+            synchronized (TimingReport.this) {
+                phases.merge(name, System.nanoTime() - started, Long::sum);
+            }
+        }
+    }
+
+    Phase phase(String name) {
+        return new Phase(name);
+    }
+
+    synchronized void attribute(String name, String value) {
+        attributes.put(name, value);
+    }
+
+    synchronized void count(String name, long value) {
+        counts.put(name, value);
+    }
+
+    synchronized void cache(String name, long hits, long misses) {
+        caches.put(name, new long[] {hits, misses});
+    }
+
+    synchronized String toJson() {
+        StringBuilder b = new StringBuilder("{\n");
+        for (Map.Entry<String, String> e : attributes.entrySet()) {
+            b.append("  ").append(quote(e.getKey())).append(": ").append(quote(e.getValue())).append(",\n");
+        }
+        b.append("  \"totalMillis\": ").append(millis(System.nanoTime() - start)).append(",\n");
+        b.append("  \"phases\": {");
+        String sep = "\n";
+        for (Map.Entry<String, Long> e : phases.entrySet()) {
+            b.append(sep).append("    ").append(quote(e.getKey())).append(": ").append(millis(e.getValue()));
+            sep = ",\n";
+        }
+        b.append(phases.isEmpty() ? "" : "\n  ").append("},\n");
+        b.append("  \"counts\": {");
+        sep = "\n";
+        for (Map.Entry<String, Long> e : counts.entrySet()) {
+            b.append(sep).append("    ").append(quote(e.getKey())).append(": ").append(e.getValue());
+            sep = ",\n";
+        }
+        b.append(counts.isEmpty() ? "" : "\n  ").append("},\n");
+        b.append("  \"caches\": {");
+        sep = "\n";
+        for (Map.Entry<String, long[]> e : caches.entrySet()) {
+            long hits = e.getValue()[0];
+            long misses = e.getValue()[1];
+            b.append(sep).append("    ").append(quote(e.getKey())).append(": {\"hits\": ").append(hits);
+            b.append(", \"misses\": ").append(misses);
+            b.append(", \"hitRate\": ")
+                    .append(hits + misses == 0
+                            ? "null"
+                            : String.format(Locale.ROOT, "%.3f", (double) hits / (hits + misses)));
+            b.append('}');
+            sep = ",\n";
+        }
+        b.append(caches.isEmpty() ? "" : "\n  ").append("}\n");
+        return b.append("}\n").toString();
+    }
+
+    void write(File file) throws IOException {
+        Files.createDirectories(file.toPath().getParent());
+        Files.writeString(file.toPath(), toJson(), StandardCharsets.UTF_8);
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.1f", nanos / 1_000_000.0);
+    }
+
+    private static String quote(String s) {
+        if (s == null) {
+            return "null";
+        }
+        StringBuilder b = new StringBuilder("\"");
+        for (char c : s.toCharArray()) {
+            switch (c) {
+                case '"':
+                    b.append("\\\"");
+                    break;
+                case '\\':
+                    b.append("\\\\");
+                    break;
+                case '\n':
+                    b.append("\\n");
+                    break;
+                case '\r':
+                    b.append("\\r");
+                    break;
+                case '\t':
+                    b.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        b.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+                    } else {
+                        b.append(c);
+                    }
+            }
+        }
+        return b.append('"').toString();
+    }
+}
@@ -3,8 +3,6 @@ package org.jenkinsci.maven.plugins.hpi;
 import hudson.util.VersionNumber;
 import java.io.File;
 import java.io.IOException;
-import java.util.jar.Attributes;
-import java.util.jar.JarFile;
 import org.apache.maven.artifact.ArtifactUtils;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
@@ -56,22 +54,12 @@ public class ValidateHpiMojo extends AbstractHpiMojo {
     private VersionNumber getDependencyCoreVersion(MavenArtifact artifact) throws IOException, MojoExecutionException {
         File file = artifact.getFile();
         if (file.isFile()) {
-            Attributes mainAttributes;
-            try (JarFile jarFile = new JarFile(file)) {
-                mainAttributes = jarFile.getManifest().getMainAttributes();
-            }
-            Attributes.Name jName = new Attributes.Name("Jenkins-Version");
-            if (mainAttributes.containsKey(jName)) {
-                return new VersionNumber(mainAttributes.getValue(jName));
-            } else {
-                Attributes.Name hName = new Attributes.Name("Hudson-Version");
-                if (mainAttributes.containsKey(hName)) {
-                    return new VersionNumber(mainAttributes.getValue(hName));
-                } else {
-                    throw new MojoExecutionException("Could not find Jenkins-Version in manifest for " + file
-                            + " of size " + file.length() + " (" + artifact + "): " + mainAttributes.entrySet());
-                }
+            String jenkinsVersion = artifact.getActualJenkinsVersion();
+            if (jenkinsVersion == null) {
+                throw new MojoExecutionException("Could not find Jenkins-Version in manifest for " + file + " of size "
+                        + file.length() + " (" + artifact + "): " + artifact.getMainAttributes(file).entrySet());
             }
+            return new VersionNumber(jenkinsVersion);
         } else {
             getLog().warn("Skipping jenkins-core validation for " + artifact
                     + " since we rely on sources and don't have a manifest. Use 'package' goal to get validation");
@@ -0,0 +1,343 @@
+package org.jenkinsci.maven.plugins.hpi;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import org.codehaus.plexus.util.FileUtils;
+import org.jenkinsci.maven.plugins.hpi.util.Utils;
+
+/**
+ * Remembers what {@link AbstractHpiMojo#buildExplodedWebapp} placed in the webapp directory,
+ * so that the next build only copies what changed and removes what is gone.
+ *
+ * <p>
+ * For every file placed in the webapp directory we record its source, size, modification time and SHA-256 digest,
+ * as well as the modification time of the copy.
+ * Files which were not placed by us, or were modified after we placed them
+ * (for example by resource filtering), are left alone and only overwritten by newer sources, as before.
+ *
+ * <p>
+ * For every directory of a scanned source tree such as {@code src/main/webapp} we record its modification time,
+ * which changes whenever an entry is added, removed or renamed in it.
+ * If none did and the include and exclude patterns are the same, the previous scan result is reused.
+ *
+ * <p>
+ * In {@linkplain #streaming streaming} mode nothing is copied: placed files are only recorded in {@link #streamed},
+ * to be archived from where they are, and copies left by an earlier build are pruned.
+ */
+final class WebappContentState {
+
+    /**
+     * Modification times this close to the present are not trusted,
+     * since a change in the same clock tick would go unnoticed.
+     */
+    private static final long RACY_MILLIS = 2000;
+
+    private static final String FILE = "file:";
+    private static final String SCAN = "scan:";
+    private static final String SCAN_FILES = "scan-files:";
+    private static final String SCAN_DIRS = "scan-dirs:";
+
+    @CheckForNull
+    private final File stateFile;
+
+    private final Path webappDirectory;
+    private final Properties previous = new Properties();
+    private final Properties current = new Properties();
+
+    /**
+     * Files to be archived without being copied, keyed by their {@code /}-separated path in the webapp,
+     * or null unless streaming.
+     */
+    @CheckForNull
+    private final Map<String, File> streamed;
+
+    private int copied;
+    private int upToDate;
+    private int removed;
+
+    private WebappContentState(@CheckForNull File stateFile, File webappDirectory, boolean streaming) {
+        this.stateFile = stateFile;
+        this.webappDirectory = webappDirectory.toPath().toAbsolutePath().normalize();
+        this.streamed = streaming ? new TreeMap<>() : null;
+    }
+
+    /**
+     * Loads the state recorded by the previous build, if any.
+     */
+    static WebappContentState load(File stateFile, File webappDirectory) {
+        return load(stateFile, webappDirectory, false);
+    }
+
+    /**
+     * Like {@link #load}, but files are recorded in {@link #streamed} instead of being copied.
+     */
+    static WebappContentState streaming(File stateFile, File webappDirectory) {
+        return load(stateFile, webappDirectory, true);
+    }
+
+    private static WebappContentState load(File stateFile, File webappDirectory, boolean streaming) {
+        WebappContentState state = new WebappContentState(stateFile, webappDirectory, streaming);
+        try (InputStream is = Files.newInputStream(stateFile.toPath())) {
+            state.previous.load(is);
+        } catch (NoSuchFileException x) {
+            // first build
+        } catch (IOException | IllegalArgumentException x) {
+            // unreadable, start over
+            state.previous.clear();
+        }
+        return state;
+    }
+
+    /**
+     * A state which records nothing and copies files as {@link FileUtils#copyFileIfModified} does.
+     */
+    static WebappContentState disabled(File webappDirectory) {
+        return new WebappContentState(null, webappDirectory, false);
+    }
+
+    /**
+     * Lists the files of a source tree, reusing the result of the previous build if nothing was added or removed.
+     *
+     * @param patterns the include and exclude patterns used by {@code scanner}, to detect configuration changes
+     * @param scanner performs the actual scan, returning paths relative to {@code sourceDirectory}
+     */
+    String[] scan(File sourceDirectory, String patterns, Supplier<String[]> scanner) throws IOException {
+        if (stateFile == null) {
+            return scanner.get();
+        }
+        Path root = sourceDirectory.toPath().toAbsolutePath().normalize();
+        String key = root.toString();
+        if (patterns.equals(previous.getProperty(SCAN + key)) && directoriesUnchanged(root, key)) {
+            String files = previous.getProperty(SCAN_FILES + key, "");
+            current.setProperty(SCAN + key, patterns);
+            current.setProperty(SCAN_FILES + key, files);
+            current.setProperty(SCAN_DIRS + key, previous.getProperty(SCAN_DIRS + key));
+            return files.isEmpty() ? new String[0] : files.split("\n");
+        }
+        String[] files = scanner.get();
+        StringBuilder dirs = new StringBuilder();
+        long now = System.currentTimeMillis();
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path dir : (Iterable<Path>) paths.filter(Files::isDirectory)::iterator) {
+                long lastModified = Files.getLastModifiedTime(dir).toMillis();
+                dirs.append(now - lastModified > RACY_MILLIS ? lastModified : -1)
+                        .append(' ')
+                        .append(root.relativize(dir))
+                        .append('\n');
+            }
+        }
+        current.setProperty(SCAN + key, patterns);
+        current.setProperty(SCAN_FILES + key, String.join("\n", files));
+        current.setProperty(SCAN_DIRS + key, dirs.toString());
+        return files;
+    }
+
+    private boolean directoriesUnchanged(Path root, String key) {
+        String dirs = previous.getProperty(SCAN_DIRS + key);
+        if (dirs == null || dirs.isEmpty()) {
+            return false;
+        }
+        for (String line : dirs.split("\n")) {
+            int space = line.indexOf(' ');
+            File dir = root.resolve(line.substring(space + 1)).toFile();
+            if (!line.substring(0, space).equals(String.valueOf(dir.lastModified())) || !dir.isDirectory()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Copies a file into the webapp directory, unless the copy there is known to be up to date.
+     */
+    void place(File source, File target) throws IOException {
+        if (stateFile == null) {
+            FileUtils.copyFileIfModified(source, target);
+            return;
+        }
+        Path path = webappDirectory.relativize(target.toPath().toAbsolutePath().normalize());
+        String key = FILE + path;
+        String sourcePath = source.getAbsolutePath();
+        Entry old = Entry.parse(previous.getProperty(key));
+        boolean ours = old != null
+                && old.source.equals(sourcePath)
+                && target.isFile()
+                && target.length() == old.size
+                && target.lastModified() == old.targetLastModified;
+        if (streamed != null) {
+            if (!ours && target.isFile() && target.lastModified() >= source.lastModified()) {
+                // somebody else put a newer file there, which will be archived instead
+                return;
+            }
+            // our own copy, if any, is not recorded again and therefore pruned
+            streamed.put(path.toString().replace(File.separatorChar, '/'), source);
+            return;
+        }
+        if (ours && old.size == source.length()) {
+            if (old.lastModified == source.lastModified()) {
+                current.setProperty(key, old.toString());
+                upToDate++;
+                return;
+            }
+            String digest = Utils.sha256(source.toPath());
+            if (digest.equals(old.digest)) {
+                // touched but not modified
+                Entry touched =
+                        new Entry(sourcePath, old.size, source.lastModified(), digest, old.targetLastModified);
+                current.setProperty(key, touched.toString());
+                upToDate++;
+                return;
+            }
+        }
+        if (!ours && target.isFile()) {
+            if (target.length() == source.length() && target.lastModified() == source.lastModified()) {
+                // copied by an earlier build which did not record it
+                Entry adopted = new Entry(
+                        sourcePath,
+                        source.length(),
+                        source.lastModified(),
+                        Utils.sha256(source.toPath()),
+                        target.lastModified());
+                current.setProperty(key, adopted.toString());
+                upToDate++;
+                return;
+            }
+            if (target.lastModified() >= source.lastModified()) {
+                // somebody else put a newer file there, which copyFileIfModified would not have replaced either
+                return;
+            }
+        }
+        current.setProperty(key, copy(source, target).toString());
+        copied++;
+    }
+
+    private static Entry copy(File source, File target) throws IOException {
+        Files.createDirectories(target.toPath().getParent());
+        long size = source.length();
+        long lastModified = source.lastModified();
+        MessageDigest md = Utils.sha256();
+        try (InputStream is = new DigestInputStream(Files.newInputStream(source.toPath()), md)) {
+            Files.copy(is, target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        if (!target.setLastModified(lastModified)) {
+            throw new IOException("Failed to set the modification time of " + target);
+        }
+        String digest = Utils.hex(md.digest());
+        return new Entry(source.getAbsolutePath(), size, lastModified, digest, target.lastModified());
+    }
+
+    /**
+     * Returns the files to be archived from where they are, keyed by their {@code /}-separated path in the webapp.
+     * Always empty unless streaming.
+     */
+    Map<String, File> streamed() {
+        return streamed != null ? Collections.unmodifiableMap(streamed) : Map.of();
+    }
+
+    /**
+     * Deletes the files we placed in the previous build but not in this one,
+     * unless they were modified since, as well as directories left empty.
+     */
+    void prune() throws IOException {
+        if (stateFile == null) {
+            return;
+        }
+        for (String key : previous.stringPropertyNames()) {
+            if (!key.startsWith(FILE) || current.containsKey(key)) {
+                continue;
+            }
+            Entry old = Entry.parse(previous.getProperty(key));
+            File target = webappDirectory.resolve(key.substring(FILE.length())).toFile();
+            if (old != null
+                    && target.isFile()
+                    && target.length() == old.size
+                    && target.lastModified() == old.targetLastModified) {
+                Files.delete(target.toPath());
+                removed++;
+                // File.delete only succeeds on empty directories
+                File dir = target.getParentFile();
+                while (!dir.toPath().equals(webappDirectory) && dir.delete()) {
+                    dir = dir.getParentFile();
+                }
+            }
+        }
+    }
+
+    /**
+     * Records the state for the next build.
+     */
+    void save() throws IOException {
+        if (stateFile == null) {
+            return;
+        }
+        // a truncated state file would be ignored, leaving our earlier copies to be copied again and never pruned
+        Utils.writeAtomically(stateFile.toPath(), os -> current.store(os, "maven-hpi-plugin webapp content"));
+    }
+
+    @Override
+    public String toString() {
+        if (streamed != null) {
+            return streamed.size() + " files streamed, " + removed + " removed";
+        }
+        return copied + " files copied, " + upToDate + " up to date, " + removed + " removed";
+    }
+
+    /**
+     * What we know about a file we placed in the webapp directory.
+     */
+    private static final class Entry {
+        final String source;
+        final long size;
+        final long lastModified;
+        final String digest;
+        final long targetLastModified;
+
+        Entry(String source, long size, long lastModified, String digest, long targetLastModified) {
+            this.source = source;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.digest = digest;
+            this.targetLastModified = targetLastModified;
+        }
+
+        @CheckForNull
+        static Entry parse(@CheckForNull String value) {
+            if (value == null) {
+                return null;
+            }
+            String[] fields = value.split(" ", 5);
+            if (fields.length != 5) {
+                return null;
+            }
+            try {
+                return new Entry(
+                        fields[4],
+                        Long.parseLong(fields[0]),
+                        Long.parseLong(fields[1]),
+                        fields[2],
+                        Long.parseLong(fields[3]));
+            } catch (NumberFormatException x) {
+                return null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return size + " " + lastModified + " " + digest + " " + targetLastModified + " " + source;
+        }
+    }
+}
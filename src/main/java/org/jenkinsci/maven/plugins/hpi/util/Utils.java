@@ -1,8 +1,31 @@
 package org.jenkinsci.maven.plugins.hpi.util;
 
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class Utils {
 
@@ -17,4 +40,174 @@ public class Utils {
         }
         return Collections.unmodifiableSet(unionSet);
     }
+
+    /**
+     * Applies a function to every element of a collection using up to the given number of threads.
+     * The results are returned in the iteration order of the input, regardless of completion order.
+     * If several invocations fail, the failure of the earliest element is rethrown.
+     *
+     * @param threads maximum number of threads to use; {@code 1} or less runs everything on the calling thread
+     */
+    public static <T, R, E extends Exception> List<R> mapInParallel(
+            Collection<? extends T> inputs, int threads, ThrowingFunction<? super T, ? extends R, E> function)
+            throws E {
+        List<R> results = new ArrayList<>(inputs.size());
+        if (threads <= 1 || inputs.size() <= 1) {
+            for (T input : inputs) {
+                results.add(function.apply(input));
+            }
+            return results;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, inputs.size()), r -> {
+            Thread t = new Thread(r, "maven-hpi-plugin worker");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<? extends R>> futures = new ArrayList<>(inputs.size());
+            for (T input : inputs) {
+                futures.add(executor.submit(() -> function.apply(input)));
+            }
+            for (Future<? extends R> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (InterruptedException x) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted", x);
+                } catch (ExecutionException x) {
+                    Throwable cause = x.getCause();
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    @SuppressWarnings("unchecked")
+                    E e = (E) cause;
+                    throw e;
+                }
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Creates a SHA-256 digest, which every JVM has to support.
+     */
+    public static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException x) {
+            throw new AssertionError(x);
+        }
+    }
+
+    /**
+     * Computes the SHA-256 digest of some bytes, in hexadecimal.
+     */
+    public static String sha256(byte[] data) {
+        return hex(sha256().digest(data));
+    }
+
+    /**
+     * Computes the SHA-256 digest of the content of a file, in hexadecimal.
+     */
+    public static String sha256(Path file) throws IOException {
+        MessageDigest md = sha256();
+        try (InputStream is = Files.newInputStream(file)) {
+            byte[] buf = new byte[65536];
+            int n;
+            while ((n = is.read(buf)) != -1) {
+                md.update(buf, 0, n);
+            }
+        }
+        return hex(md.digest());
+    }
+
+    /**
+     * Formats a digest in lowercase hexadecimal.
+     */
+    public static String hex(byte[] digest) {
+        return HexFormat.of().formatHex(digest);
+    }
+
+    /**
+     * Writes a file by writing a temporary file next to it and moving that over the file,
+     * so that concurrent readers, and the next build after an interrupted one, see either the old or the new content.
+     * Creates the parent directory if needed.
+     */
+    public static void writeAtomically(Path file, ThrowingConsumer<? super OutputStream, IOException> writer)
+            throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path tmp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream os = Files.newOutputStream(tmp)) {
+                writer.accept(os);
+            }
+            try {
+                Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException x) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Tries to lock a file, created if need be, against other processes as well as other threads of this one.
+     * The lock is released by closing {@link FileLock#channel}.
+     *
+     * @return null if the file is locked already
+     */
+    @CheckForNull
+    public static FileLock tryLock(Path lockFile) throws IOException {
+        FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock lock;
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException x) {
+            // held by another thread of this process
+            lock = null;
+        } catch (IOException x) {
+            channel.close();
+            throw x;
+        }
+        if (lock == null) {
+            channel.close();
+        }
+        return lock;
+    }
+
+    /**
+     * Writes a file unless it already has exactly this content, in which case its modification time is left alone.
+     *
+     * @return whether the file was written
+     */
+    public static boolean writeIfChanged(Path file, byte[] content) throws IOException {
+        if (Files.isRegularFile(file) && Arrays.equals(content, Files.readAllBytes(file))) {
+            return false;
+        }
+        Files.write(file, content);
+        return true;
+    }
+
+    /**
+     * A {@link java.util.function.Function} which may throw a checked exception.
+     */
+    @FunctionalInterface
+    public interface ThrowingFunction<T, R, E extends Exception> {
+        R apply(T t) throws E;
+    }
+
+    /**
+     * A {@link java.util.function.Consumer} which may throw a checked exception.
+     */
+    @FunctionalInterface
+    public interface ThrowingConsumer<T, E extends Exception> {
+        void accept(T t) throws E;
+    }
 }
@@ -0,0 +1,136 @@
+package org.jenkinsci.maven.plugins.hpi;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.anEmptyMap;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BundledPluginsTest {
+
+    @TempDir
+    Path dir;
+
+    private static byte[] plugin(String groupId, String shortName, String version) throws IOException {
+        Manifest manifest = new Manifest();
+        Attributes attributes = manifest.getMainAttributes();
+        attributes.put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        attributes.putValue("Group-Id", groupId);
+        attributes.putValue("Short-Name", shortName);
+        attributes.putValue("Plugin-Version", version);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        new JarOutputStream(baos, manifest).close();
+        return baos.toByteArray();
+    }
+
+    private File war(Map<String, byte[]> entries) throws IOException {
+        File war = dir.resolve("jenkins.war").toFile();
+        try (OutputStream os = Files.newOutputStream(war.toPath());
+                JarOutputStream jos = new JarOutputStream(os)) {
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                jos.putNextEntry(new JarEntry(entry.getKey()));
+                jos.write(entry.getValue());
+                jos.closeEntry();
+            }
+        }
+        return war;
+    }
+
+    private File war() throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put("index.jsp", "<html/>".getBytes(StandardCharsets.UTF_8));
+        entries.put("WEB-INF/lib/jenkins-core-2.440.3.jar", new byte[0]);
+        entries.put("WEB-INF/lib/remoting-3206.vb_15dcf73f6a_9.jar", new byte[0]);
+        entries.put(
+                "WEB-INF/plugins/credentials.hpi",
+                plugin("org.jenkins-ci.plugins", "credentials", "1319.v7eb_51b_3a_c97b_"));
+        entries.put(
+                "WEB-INF/plugins/example.jpi",
+                plugin("io.jenkins.plugins", "example", "1.0-SNAPSHOT (private-abcd1234-user)"));
+        return war(entries);
+    }
+
+    @Test
+    void scan() throws Exception {
+        for (int threads : new int[] {1, 4}) {
+            BundledPlugins bundled = BundledPlugins.scan(war(), threads);
+            assertEquals("2.440.3", bundled.coreVersion);
+            assertEquals(
+                    Map.of(
+                            "org.jenkins-ci.plugins:credentials", "1319.v7eb_51b_3a_c97b_",
+                            "io.jenkins.plugins:example", "1.0-SNAPSHOT"),
+                    bundled.plugins);
+        }
+    }
+
+    @Test
+    void noCore() throws Exception {
+        BundledPlugins bundled = BundledPlugins.scan(war(Map.of("index.jsp", new byte[0])), 2);
+        assertNull(bundled.coreVersion);
+        assertThat(bundled.plugins, anEmptyMap());
+    }
+
+    @Test
+    void malformed() throws Exception {
+        assertThrows(
+                MojoExecutionException.class,
+                () -> BundledPlugins.scan(
+                        war(Map.of(
+                                "WEB-INF/lib/jenkins-core-2.440.3.jar", new byte[0],
+                                "WEB-INF/lib/jenkins-core-2.452.jar", new byte[0])),
+                        2));
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> BundledPlugins.scan(
+                        war(Map.of(
+                                "WEB-INF/plugins/example.hpi",
+                                plugin("io.jenkins.plugins", "example", "1.0"),
+                                "WEB-INF/plugins/broken.hpi",
+                                new byte[] {1, 2, 3})),
+                        2));
+    }
+
+    @Test
+    void storeAndLoad() throws Exception {
+        Path stored = dir.resolve("cache/bundled-plugins/0123456789abcdef.properties");
+        assertNull(BundledPlugins.load(stored));
+        BundledPlugins scanned = BundledPlugins.scan(war(), 2);
+        BundledPlugins.store(scanned, stored);
+        BundledPlugins loaded = BundledPlugins.load(stored);
+        assertEquals(scanned.coreVersion, loaded.coreVersion);
+        assertEquals(scanned.plugins, loaded.plugins);
+
+        BundledPlugins.store(BundledPlugins.scan(war(Map.of("index.jsp", new byte[0])), 2), stored);
+        loaded = BundledPlugins.load(stored);
+        assertNull(loaded.coreVersion);
+        assertThat(loaded.plugins, anEmptyMap());
+    }
+
+    @Test
+    void corruptStoredFile() throws Exception {
+        Path stored = dir.resolve("0123456789abcdef.properties");
+        // an invalid unicode escape
+        Files.write(stored, "core=\\u00zz\n".getBytes(StandardCharsets.ISO_8859_1));
+        assertNull(BundledPlugins.load(stored));
+        // scanned again and overwritten
+        BundledPlugins.store(BundledPlugins.scan(war(), 2), stored);
+        assertEquals("2.440.3", BundledPlugins.load(stored).coreVersion);
+    }
+}
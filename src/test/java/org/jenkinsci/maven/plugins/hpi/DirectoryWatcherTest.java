@@ -0,0 +1,99 @@
+package org.jenkinsci.maven.plugins.hpi;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.not;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DirectoryWatcherTest {
+
+    @TempDir
+    Path dir;
+
+    private DirectoryWatcher watch(Path root) throws IOException {
+        return new DirectoryWatcher(List.of(root), p -> !p.getFileName().toString().endsWith(".jelly"));
+    }
+
+    private static void write(Path file, String content) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content);
+    }
+
+    /**
+     * Collects changes until the expected file shows up, since one change may be reported in several bursts.
+     */
+    private static Set<Path> awaitChange(DirectoryWatcher watcher, Path expected) throws InterruptedException {
+        Set<Path> changes = new TreeSet<>();
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (!changes.contains(expected) && System.currentTimeMillis() < deadline) {
+            changes.addAll(watcher.awaitChanges(1000, 200));
+        }
+        return changes;
+    }
+
+    @Test
+    void modify() throws Exception {
+        Path root = dir.resolve("classes");
+        Path file = root.resolve("org/example/Foo.class");
+        write(file, "one");
+        try (DirectoryWatcher watcher = watch(root)) {
+            write(file, "two");
+            assertThat(awaitChange(watcher, file), hasItem(file));
+        }
+    }
+
+    @Test
+    void create() throws Exception {
+        Path root = dir.resolve("classes");
+        Files.createDirectories(root);
+        try (DirectoryWatcher watcher = watch(root)) {
+            Path jelly = root.resolve("org/example/Foo/config.jelly");
+            Path file = root.resolve("org/example/Foo.class");
+            write(jelly, "<j:jelly/>");
+            write(file, "one");
+            Set<Path> changes = awaitChange(watcher, file);
+            assertThat(changes, hasItem(file));
+            assertThat(changes, not(hasItem(jelly)));
+            // and the new directories are watched too
+            write(file, "two");
+            assertThat(awaitChange(watcher, file), hasItem(file));
+        }
+    }
+
+    @Test
+    void deleteAndRecreate() throws Exception {
+        Path root = dir.resolve("target/classes");
+        Path file = root.resolve("org/example/Foo.class");
+        write(file, "one");
+        try (DirectoryWatcher watcher = watch(root)) {
+            // as mvn clean does
+            FileUtils.deleteDirectory(dir.resolve("target").toFile());
+            assertThat(awaitChange(watcher, file), hasItem(file));
+            write(file, "two");
+            assertThat(awaitChange(watcher, file), hasItem(file));
+            write(file, "three");
+            assertThat(awaitChange(watcher, file), hasItem(file));
+        }
+    }
+
+    @Test
+    void missingRoot() throws Exception {
+        Path root = dir.resolve("target/classes");
+        try (DirectoryWatcher watcher = watch(root)) {
+            Path file = root.resolve("org/example/Foo.class");
+            write(file, "one");
+            assertThat(awaitChange(watcher, file), hasItem(file));
+            write(file, "two");
+            assertThat(awaitChange(watcher, file), hasItem(file));
+        }
+    }
+}
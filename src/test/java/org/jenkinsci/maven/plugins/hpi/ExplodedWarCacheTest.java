@@ -0,0 +1,96 @@
+package org.jenkinsci.maven.plugins.hpi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ExplodedWarCacheTest {
+
+    private static final long T = 1_000_000_000_000L;
+
+    @TempDir
+    Path root;
+
+    private ExplodedWarCache lock(String checksum) throws IOException {
+        return ExplodedWarCache.lock(root, checksum, new SystemStreamLog());
+    }
+
+    /**
+     * Leaves an exploded WAR as if it was last used at the given time.
+     */
+    private void exploded(String checksum, long lastUsed, boolean lockFile) throws IOException {
+        Path dir = root.resolve(checksum);
+        Files.createDirectories(dir.resolve("WEB-INF"));
+        Files.writeString(dir.resolve("WEB-INF/web.xml"), "<web-app/>");
+        Files.setLastModifiedTime(dir, FileTime.fromMillis(lastUsed));
+        if (lockFile) {
+            Path lock = root.resolve(checksum + ".lock");
+            Files.writeString(lock, "");
+            Files.setLastModifiedTime(lock, FileTime.fromMillis(lastUsed));
+        }
+    }
+
+    @Test
+    void lock() throws Exception {
+        try (ExplodedWarCache cache = lock("0123")) {
+            assertNotNull(cache);
+            assertEquals(root.resolve("0123"), cache.directory());
+            assertNull(lock("0123"), "in use by another launch");
+            try (ExplodedWarCache other = lock("4567")) {
+                assertNotNull(other, "another WAR");
+            }
+        }
+        try (ExplodedWarCache cache = lock("0123")) {
+            assertNotNull(cache, "no longer in use");
+        }
+        // lock files are kept, so that every launch locks the same file
+        assertTrue(Files.exists(root.resolve("0123.lock")));
+    }
+
+    @Test
+    void prune() throws Exception {
+        exploded("a", T, true);
+        exploded("b", T + 1000, true);
+        exploded("c", T + 2000, true);
+        exploded("d", T + 3000, true);
+        // only its modification time tells when it was last used
+        exploded("e", T + 500, false);
+        try (ExplodedWarCache cache = lock("f")) {
+            assertNotNull(cache);
+        }
+        assertEquals(3, ExplodedWarCache.KEPT);
+        assertFalse(Files.exists(root.resolve("a")));
+        assertFalse(Files.exists(root.resolve("b")));
+        assertTrue(Files.exists(root.resolve("c/WEB-INF/web.xml")));
+        assertTrue(Files.exists(root.resolve("d/WEB-INF/web.xml")));
+        assertFalse(Files.exists(root.resolve("e")));
+        assertTrue(Files.exists(root.resolve("a.lock")));
+    }
+
+    @Test
+    void pruneSkipsDirectoriesInUse() throws Exception {
+        try (ExplodedWarCache inUse = lock("a")) {
+            assertNotNull(inUse);
+            exploded("a", T, false);
+            Files.setLastModifiedTime(root.resolve("a.lock"), FileTime.fromMillis(T));
+            exploded("b", T + 1000, true);
+            exploded("c", T + 2000, true);
+            exploded("d", T + 3000, true);
+            try (ExplodedWarCache cache = lock("e")) {
+                assertNotNull(cache);
+            }
+            assertTrue(Files.exists(root.resolve("a/WEB-INF/web.xml")), "in use");
+            assertFalse(Files.exists(root.resolve("b")));
+        }
+    }
+}
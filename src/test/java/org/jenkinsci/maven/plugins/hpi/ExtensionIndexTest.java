@@ -0,0 +1,105 @@
+package org.jenkinsci.maven.plugins.hpi;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import hudson.Extension;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import jenkins.YesNoMaybe;
+import net.java.sezpoz.impl.SerAnnotatedElement;
+import net.java.sezpoz.impl.SerEnumConst;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ExtensionIndexTest {
+
+    @TempDir
+    Path dir;
+
+    private static SerAnnotatedElement extension(String className, YesNoMaybe dynamicLoadable) {
+        Map<String, Object> values = new TreeMap<>();
+        if (dynamicLoadable != null) {
+            values.put("dynamicLoadable", new SerEnumConst(YesNoMaybe.class.getName(), dynamicLoadable.name()));
+        }
+        values.put("ordinal", 1.0);
+        return new SerAnnotatedElement(className, null, false, values);
+    }
+
+    /**
+     * Serializes objects as SezPoz writes an index, terminated by {@code null}.
+     */
+    private static byte[] serialize(Object... elements) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(baos)) {
+            for (Object element : elements) {
+                oos.writeObject(element);
+            }
+            oos.writeObject(null);
+        }
+        return baos.toByteArray();
+    }
+
+    private Path classes(String name, byte[] index) throws IOException {
+        Path classes = dir.resolve(name);
+        Path file = classes.resolve("META-INF/annotations/" + Extension.class.getName());
+        Files.createDirectories(file.getParent());
+        Files.write(file, index);
+        return classes;
+    }
+
+    @Test
+    void noExtensions() throws Exception {
+        assertThat(new ExtensionIndex().dynamicLoadability(dir.toFile()), empty());
+        assertThat(ExtensionIndex.read(serialize()), empty());
+    }
+
+    @Test
+    void dynamicLoadability() throws Exception {
+        byte[] index = serialize(
+                extension("org.example.Default", null),
+                extension("org.example.Yes", YesNoMaybe.YES),
+                extension("org.example.AlsoYes", YesNoMaybe.YES));
+        ExtensionIndex extensions = new ExtensionIndex();
+        assertThat(
+                extensions.dynamicLoadability(classes("classes", index).toFile()),
+                containsInAnyOrder(YesNoMaybe.MAYBE, YesNoMaybe.YES));
+        assertThat(
+                ExtensionIndex.read(serialize(extension("org.example.No", YesNoMaybe.NO))),
+                containsInAnyOrder(YesNoMaybe.NO));
+    }
+
+    @Test
+    void cachedByContent() throws Exception {
+        byte[] index = serialize(extension("org.example.Yes", YesNoMaybe.YES));
+        ExtensionIndex extensions = new ExtensionIndex();
+        assertSame(
+                extensions.dynamicLoadability(classes("one", index).toFile()),
+                extensions.dynamicLoadability(classes("two", index).toFile()));
+    }
+
+    @Test
+    void malformed() throws Exception {
+        ExtensionIndex extensions = new ExtensionIndex();
+        assertThrows(
+                IOException.class,
+                () -> extensions.dynamicLoadability(classes("garbage", new byte[] {1, 2, 3}).toFile()));
+        // not an annotated element
+        assertThrows(IOException.class, () -> ExtensionIndex.read(serialize("org.example.Foo")));
+        // rejected by the filter before it is even instantiated
+        assertThrows(IOException.class, () -> ExtensionIndex.read(serialize(URI.create("https://example.org/"))));
+        // truncated
+        byte[] index = serialize(extension("org.example.Yes", YesNoMaybe.YES));
+        assertThrows(IOException.class, () -> ExtensionIndex.read(Arrays.copyOf(index, index.length - 1)));
+    }
+}
@@ -0,0 +1,83 @@
+package org.jenkinsci.maven.plugins.hpi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FileLinkerTest {
+
+    private static final long T = 1_000_000_000_000L;
+
+    @TempDir
+    Path dir;
+
+    private static Path write(Path file, String content, long lastModified) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(lastModified));
+        return file;
+    }
+
+    @Test
+    void copy() throws Exception {
+        Path source = write(dir.resolve("repository/example.hpi"), "one", T);
+        Path target = dir.resolve("test-dependencies/example.hpi");
+        FileLinker linker = new FileLinker(false, new SystemStreamLog());
+        linker.place(source, target);
+        assertEquals("0 linked, 0 cloned, 1 copied, 0 up to date", linker.toString());
+        assertEquals("one", Files.readString(target));
+        assertFalse(Files.isSameFile(source, target));
+        assertTrue(FileLinker.isUpToDate(source, target));
+        linker.place(source, target);
+        assertEquals("0 linked, 0 cloned, 1 copied, 1 up to date", linker.toString());
+    }
+
+    @Test
+    void hardLink() throws Exception {
+        Path source = write(dir.resolve("repository/example.hpi"), "one", T);
+        Path target = dir.resolve("test-dependencies/example.hpi");
+        FileLinker linker = new FileLinker(true, new SystemStreamLog());
+        linker.place(source, target);
+        // on the same file system as its source
+        assertEquals("1 linked, 0 cloned, 0 copied, 0 up to date", linker.toString());
+        assertTrue(Files.isSameFile(source, target));
+        linker.place(source, target);
+        assertEquals("1 linked, 0 cloned, 0 copied, 1 up to date", linker.toString());
+    }
+
+    @Test
+    void replaceWithoutWritingThrough() throws Exception {
+        Path old = write(dir.resolve("repository/example-1.0.hpi"), "one", T);
+        Path source = write(dir.resolve("repository/example-2.0.hpi"), "two", T + 1000);
+        Path target = dir.resolve("test-dependencies/example.hpi");
+        FileLinker linker = new FileLinker(true, new SystemStreamLog());
+        linker.place(old, target);
+        assertFalse(FileLinker.isUpToDate(source, target));
+        linker.place(source, target);
+        assertEquals("two", Files.readString(target));
+        // the file linked before is left alone
+        assertEquals("one", Files.readString(old));
+        assertEquals(T, Files.getLastModifiedTime(old).toMillis());
+    }
+
+    @Test
+    void isUpToDate() throws Exception {
+        Path source = write(dir.resolve("source"), "one", T);
+        Path target = dir.resolve("target");
+        assertFalse(FileLinker.isUpToDate(source, target), "missing");
+        write(target, "one", T + 1000);
+        assertFalse(FileLinker.isUpToDate(source, target), "modified at another time");
+        write(target, "three", T);
+        assertFalse(FileLinker.isUpToDate(source, target), "of another size");
+        write(target, "two", T);
+        assertTrue(FileLinker.isUpToDate(source, target), "the content is not compared");
+    }
+}
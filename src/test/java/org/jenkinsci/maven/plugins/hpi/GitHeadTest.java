@@ -0,0 +1,103 @@
+package org.jenkinsci.maven.plugins.hpi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class GitHeadTest {
+
+    private static final String COMMIT = "0123456789abcdef0123456789abcdef01234567";
+    private static final String OTHER = "89abcdef0123456789abcdef0123456789abcdef";
+
+    @TempDir
+    Path dir;
+
+    private void write(String path, String content) throws IOException {
+        Path file = dir.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content);
+    }
+
+    @Test
+    void looseRef() throws Exception {
+        write(".git/HEAD", "ref: refs/heads/main\n");
+        write(".git/refs/heads/main", COMMIT + "\n");
+        Files.createDirectories(dir.resolve("module/src"));
+        Path gitDir = GitHead.findGitDir(dir.resolve("module/src"));
+        assertEquals(dir.resolve(".git"), gitDir);
+        assertEquals(COMMIT, GitHead.readHead(gitDir));
+    }
+
+    @Test
+    void packedRef() throws Exception {
+        write(".git/HEAD", "ref: refs/heads/main\n");
+        write(
+                ".git/packed-refs",
+                "# pack-refs with: peeled fully-peeled sorted \n" + OTHER + " refs/tags/v1\n^" + COMMIT + "\n" + COMMIT
+                        + " refs/heads/main\n");
+        assertEquals(COMMIT, GitHead.readHead(dir.resolve(".git")));
+    }
+
+    @Test
+    void detachedHead() throws Exception {
+        write(".git/HEAD", COMMIT + "\n");
+        assertEquals(COMMIT, GitHead.readHead(dir.resolve(".git")));
+    }
+
+    @Test
+    void unbornBranch() throws Exception {
+        write(".git/HEAD", "ref: refs/heads/main\n");
+        assertNull(GitHead.readHead(dir.resolve(".git")));
+    }
+
+    @Test
+    void linkedWorktree() throws Exception {
+        write("repo/.git/refs/heads/feature", OTHER + "\n");
+        write("repo/.git/worktrees/wt/HEAD", "ref: refs/heads/feature\n");
+        write("repo/.git/worktrees/wt/commondir", "../..\n");
+        write("wt/.git", "gitdir: ../repo/.git/worktrees/wt\n");
+        Path gitDir = GitHead.findGitDir(dir.resolve("wt"));
+        assertEquals(dir.resolve("repo/.git/worktrees/wt"), gitDir);
+        assertEquals(OTHER, GitHead.readHead(gitDir));
+    }
+
+    @Test
+    void reftableIsNotSupported() throws Exception {
+        write(".git/HEAD", "ref: refs/heads/.invalid\n");
+        write(".git/reftable/tables.list", "");
+        assertThrows(GitHead.UnsupportedRepositoryException.class, () -> GitHead.readHead(dir.resolve(".git")));
+    }
+
+    @Test
+    void symbolicRefLoopIsNotSupported() throws Exception {
+        write(".git/HEAD", "ref: refs/heads/a\n");
+        write(".git/refs/heads/a", "ref: refs/heads/b\n");
+        write(".git/refs/heads/b", "ref: refs/heads/a\n");
+        assertThrows(GitHead.UnsupportedRepositoryException.class, () -> GitHead.readHead(dir.resolve(".git")));
+    }
+
+    @Test
+    void garbageIsNotSupported() throws Exception {
+        write(".git/HEAD", "not a commit\n");
+        assertThrows(GitHead.UnsupportedRepositoryException.class, () -> GitHead.readHead(dir.resolve(".git")));
+    }
+
+    @Test
+    void fallback() throws Exception {
+        write(".git/HEAD", "ref: refs/heads/.invalid\n");
+        write(".git/reftable/tables.list", "");
+        assertEquals(COMMIT, new GitHead().resolve(dir.toFile(), () -> COMMIT));
+        write(".git/HEAD", COMMIT + "\n");
+        Files.delete(dir.resolve(".git/reftable/tables.list"));
+        Files.delete(dir.resolve(".git/reftable"));
+        assertEquals(COMMIT, new GitHead().resolve(dir.toFile(), () -> {
+            throw new AssertionError("no fallback needed");
+        }));
+    }
+}
@@ -0,0 +1,131 @@
+package org.jenkinsci.maven.plugins.hpi;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class PackagingFingerprintTest {
+
+    private static final long T = 1_000_000_000_000L;
+
+    @TempDir
+    Path dir;
+
+    private File stateFile() {
+        return dir.resolve("state.properties").toFile();
+    }
+
+    private static File write(Path file, String content, long lastModified) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(lastModified));
+        return file.toFile();
+    }
+
+    private PackagingFingerprint fingerprint(String version) throws IOException {
+        PackagingFingerprint fingerprint = new PackagingFingerprint();
+        fingerprint.value("configuration", version);
+        fingerprint.tree("classes", dir.resolve("classes").toFile());
+        fingerprint.contents("manifest", dir.resolve("MANIFEST.MF").toFile());
+        fingerprint.file("jar", null);
+        return fingerprint;
+    }
+
+    @Test
+    void noPreviousBuild() throws Exception {
+        assertThat(fingerprint("1.0").changesSince(stateFile()), contains("no previous build recorded"));
+    }
+
+    @Test
+    void unchanged() throws Exception {
+        write(dir.resolve("classes/org/example/Foo.class"), "one", T);
+        write(dir.resolve("MANIFEST.MF"), "Manifest-Version: 1.0\n", T);
+        File hpi = write(dir.resolve("example.hpi"), "archive", T);
+        fingerprint("1.0").save(stateFile(), hpi);
+        assertThat(fingerprint("1.0").changesSince(stateFile(), hpi), empty());
+    }
+
+    @Test
+    void changes() throws Exception {
+        Path foo = dir.resolve("classes/org/example/Foo.class");
+        write(foo, "one", T);
+        write(dir.resolve("MANIFEST.MF"), "Manifest-Version: 1.0\n", T);
+        fingerprint("1.0").save(stateFile());
+
+        assertThat(fingerprint("1.1").changesSince(stateFile()), contains("configuration changed"));
+
+        write(foo, "one", T + 1000);
+        assertThat(fingerprint("1.0").changesSince(stateFile()), contains("classes changed"));
+        write(foo, "one", T);
+
+        write(dir.resolve("classes/org/example/Bar.class"), "one", T);
+        assertThat(fingerprint("1.0").changesSince(stateFile()), contains("classes changed"));
+        Files.delete(dir.resolve("classes/org/example/Bar.class"));
+
+        // the content counts, not the modification time
+        write(dir.resolve("MANIFEST.MF"), "Manifest-Version: 1.0\n", T + 1000);
+        assertThat(fingerprint("1.0").changesSince(stateFile()), empty());
+        write(dir.resolve("MANIFEST.MF"), "Manifest-Version: 2.0\n", T);
+        assertThat(fingerprint("1.0").changesSince(stateFile()), contains("manifest changed"));
+
+        Files.delete(dir.resolve("MANIFEST.MF"));
+        assertThat(fingerprint("1.1").changesSince(stateFile()), contains("configuration changed", "manifest changed"));
+    }
+
+    @Test
+    void outputs() throws Exception {
+        File hpi = write(dir.resolve("example.hpi"), "archive", T);
+        File jar = write(dir.resolve("example.jar"), "archive", T);
+        fingerprint("1.0").save(stateFile(), hpi, jar);
+        assertThat(fingerprint("1.0").changesSince(stateFile(), hpi, jar), empty());
+
+        write(hpi.toPath(), "archive", T + 1000);
+        Files.delete(jar.toPath());
+        assertThat(
+                fingerprint("1.0").changesSince(stateFile(), hpi, jar),
+                contains("example.hpi was modified", "example.jar is missing"));
+
+        // an archive which was not recorded
+        File other = write(dir.resolve("other.hpi"), "archive", T);
+        assertThat(fingerprint("1.0").changesSince(stateFile(), other), contains("other.hpi was modified"));
+    }
+
+    @Test
+    void recorded() throws Exception {
+        PackagingFingerprint fingerprint = fingerprint("1.0");
+        fingerprint.record("Plugin-Version", "1.0 (private-abcdef)");
+        fingerprint.save(stateFile());
+
+        fingerprint = fingerprint("1.0");
+        assertNull(fingerprint.recordedBefore("Plugin-Version"), "not loaded yet");
+        assertThat(fingerprint.changesSince(stateFile()), empty());
+        assertEquals("1.0 (private-abcdef)", fingerprint.recordedBefore("Plugin-Version"));
+        assertNull(fingerprint.recordedBefore("Other"));
+    }
+
+    @Test
+    void corruptStateFile() throws Exception {
+        fingerprint("1.0").save(stateFile());
+        // an invalid unicode escape
+        Files.write(stateFile().toPath(), "component\\:configuration=\\u00zz\n".getBytes(StandardCharsets.ISO_8859_1));
+        PackagingFingerprint fingerprint = fingerprint("1.0");
+        assertThat(fingerprint.changesSince(stateFile()), contains("previous build record is unreadable"));
+
+        // a truncated one merely lacks some digests
+        Files.writeString(stateFile().toPath(), "");
+        assertThat(
+                fingerprint("1.0").changesSince(stateFile()),
+                contains("classes changed", "configuration changed", "jar changed", "manifest changed"));
+    }
+}
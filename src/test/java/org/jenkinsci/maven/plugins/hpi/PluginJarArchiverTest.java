@@ -0,0 +1,81 @@
+package org.jenkinsci.maven.plugins.hpi;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class PluginJarArchiverTest {
+
+    private static final long T = 1_000_000_000_000L;
+
+    /**
+     * Compresses well, so that a deflated entry is easily told apart from a stored one.
+     */
+    private static final String CONTENT = "x".repeat(10_000);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void isStored() {
+        PluginJarArchiver archiver = new PluginJarArchiver();
+        assertFalse(archiver.isStored("WEB-INF/lib/example.jar"), "nothing is stored by default");
+        archiver.setStoredEntries(new String[] {"**/*.jar", " **/*.PNG "}, new String[] {"WEB-INF/lib/keep-*.jar"});
+        assertTrue(archiver.isStored("WEB-INF/lib/example.jar"));
+        assertTrue(archiver.isStored("images/logo.png"));
+        assertFalse(archiver.isStored("WEB-INF/lib/keep-deflated.jar"));
+        assertFalse(archiver.isStored("index.jelly"));
+    }
+
+    private File archive(String name, boolean addInParallel) throws IOException {
+        Path webapp = dir.resolve("webapp");
+        for (String entry : new String[] {"WEB-INF/lib/example.jar", "images/logo.png", "index.jelly"}) {
+            Path file = webapp.resolve(entry);
+            Files.createDirectories(file.getParent());
+            Files.writeString(file, CONTENT);
+            Files.setLastModifiedTime(file, FileTime.fromMillis(T));
+        }
+        File destFile = dir.resolve(name).toFile();
+        PluginJarArchiver archiver = new PluginJarArchiver();
+        archiver.setStoredEntries(new String[] {"**/*.jar", "**/*.png"}, new String[0]);
+        archiver.setAddInParallel(addInParallel);
+        archiver.configureReproducibleBuild(FileTime.fromMillis(T));
+        archiver.setDestFile(destFile);
+        archiver.addDirectory(webapp.toFile());
+        archiver.createArchive();
+        return destFile;
+    }
+
+    @Test
+    void storedEntries() throws Exception {
+        try (ZipFile zip = new ZipFile(archive("example.hpi", true))) {
+            assertEquals(ZipEntry.STORED, zip.getEntry("WEB-INF/lib/example.jar").getMethod());
+            assertEquals(ZipEntry.STORED, zip.getEntry("images/logo.png").getMethod());
+            assertEquals(ZipEntry.DEFLATED, zip.getEntry("index.jelly").getMethod());
+            for (String entry : new String[] {"WEB-INF/lib/example.jar", "images/logo.png", "index.jelly"}) {
+                try (InputStream is = zip.getInputStream(zip.getEntry(entry))) {
+                    assertEquals(CONTENT, new String(is.readAllBytes()), entry);
+                }
+            }
+        }
+    }
+
+    @Test
+    void serialSameAsParallel() throws Exception {
+        byte[] parallel = Files.readAllBytes(archive("parallel.hpi", true).toPath());
+        byte[] serial = Files.readAllBytes(archive("serial.hpi", false).toPath());
+        assertArrayEquals(parallel, serial);
+    }
+}
@@ -0,0 +1,125 @@
+package org.jenkinsci.maven.plugins.hpi;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.anEmptyMap;
+import static org.hamcrest.Matchers.empty;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ResolutionCacheTest {
+
+    @TempDir
+    Path dir;
+
+    private ResolutionCache cache() {
+        return new ResolutionCache(dir.resolve("cache").toFile());
+    }
+
+    private File file(String name) throws IOException {
+        Path file = dir.resolve("repository").resolve(name);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, name);
+        return file.toFile();
+    }
+
+    private ResolutionCache.Entry entry() throws IOException {
+        ResolutionCache.Entry entry = new ResolutionCache.Entry();
+        entry.additions.put("org.jenkins-ci.plugins:structs", "338.v848422169819");
+        entry.deletions.put("org.jenkins-ci.plugins:script-security", "1.0");
+        entry.updates.put("org.jenkins-ci.plugins:credentials", "1319.v7eb_51b_3a_c97b_");
+        // more than ten, so that their order does not depend on sorting strings
+        for (int i = 0; i < 12; i++) {
+            entry.plugins.put("plugin-" + (12 - i) + ".hpi", file("plugin-" + (12 - i) + ".hpi"));
+        }
+        entry.additionalClasspath.add(file("annotations.jar").getAbsolutePath());
+        entry.additionalClasspath.add(file("extra.jar").getAbsolutePath());
+        entry.dependencyExcludes.add("org.example:excluded");
+        return entry;
+    }
+
+    private static void assertEntryEquals(ResolutionCache.Entry expected, ResolutionCache.Entry actual) {
+        assertEquals(expected.additions, actual.additions);
+        assertEquals(expected.deletions, actual.deletions);
+        assertEquals(expected.updates, actual.updates);
+        assertEquals(new ArrayList<>(expected.plugins.entrySet()), new ArrayList<>(actual.plugins.entrySet()));
+        assertEquals(expected.additionalClasspath, actual.additionalClasspath);
+        assertEquals(expected.dependencyExcludes, actual.dependencyExcludes);
+    }
+
+    @Test
+    void key() {
+        assertEquals(ResolutionCache.key(List.of("a", "b")), ResolutionCache.key(List.of("a", "b")));
+        assertNotEquals(ResolutionCache.key(List.of("a", "b")), ResolutionCache.key(List.of("b", "a")));
+        assertNotEquals(ResolutionCache.key(List.of("ab", "c")), ResolutionCache.key(List.of("a", "bc")));
+    }
+
+    @Test
+    void roundTrip() throws Exception {
+        ResolutionCache cache = cache();
+        String key = ResolutionCache.key(List.of("roundTrip"));
+        assertNull(cache.load(key));
+        ResolutionCache.Entry entry = entry();
+        cache.store(key, entry);
+        assertEntryEquals(entry, cache.load(key));
+        // and from another build sharing the directory
+        assertEntryEquals(entry, cache().load(key));
+    }
+
+    @Test
+    void emptyEntry() throws Exception {
+        ResolutionCache cache = cache();
+        cache.store("empty", new ResolutionCache.Entry());
+        ResolutionCache.Entry loaded = cache.load("empty");
+        assertThat(loaded.plugins, anEmptyMap());
+        assertThat(loaded.additionalClasspath, empty());
+        assertThat(loaded.dependencyExcludes, empty());
+    }
+
+    @Test
+    void incomplete() throws Exception {
+        ResolutionCache cache = cache();
+        ResolutionCache.Entry entry = entry();
+        cache.store("plugin", entry);
+        cache.store("classpath", entry);
+        Files.delete(entry.plugins.get("plugin-3.hpi").toPath());
+        assertNull(cache.load("plugin"));
+        Files.delete(Path.of(entry.additionalClasspath.get(1)));
+        assertNull(cache.load("classpath"));
+    }
+
+    @Test
+    void corrupt() throws Exception {
+        ResolutionCache cache = cache();
+        Path file = dir.resolve("cache/corrupt.properties");
+        cache.store("corrupt", new ResolutionCache.Entry());
+        String valid = Files.readString(file, StandardCharsets.ISO_8859_1);
+
+        // an invalid unicode escape
+        Files.writeString(file, valid + "addition.org.example\\:foo=\\u00zz\n", StandardCharsets.ISO_8859_1);
+        assertNull(cache.load("corrupt"));
+        // truncated
+        Files.writeString(file, "addition.org.example\\:foo=1.0\n", StandardCharsets.ISO_8859_1);
+        assertNull(cache.load("corrupt"));
+        // malformed plugins
+        Files.writeString(file, valid + "plugin.0=foo.hpi\n", StandardCharsets.ISO_8859_1);
+        assertNull(cache.load("corrupt"));
+        Files.writeString(file, valid + "plugin.first=foo.hpi=/foo.hpi\n", StandardCharsets.ISO_8859_1);
+        assertNull(cache.load("corrupt"));
+
+        // replaced by the next build
+        ResolutionCache.Entry entry = entry();
+        cache.store("corrupt", entry);
+        assertEntryEquals(entry, cache.load("corrupt"));
+    }
+}
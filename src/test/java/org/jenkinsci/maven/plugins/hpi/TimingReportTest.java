@@ -0,0 +1,106 @@
+package org.jenkinsci.maven.plugins.hpi;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TimingReportTest {
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Replaces durations, which vary from run to run.
+     */
+    private static String withoutMillis(String json) {
+        return json.replaceAll("(\"totalMillis\"|\"[a-z-]+\"): [0-9]+[.][0-9](,?)\n", "$1: 0.0$2\n");
+    }
+
+    @Test
+    void empty() {
+        assertEquals(
+                "{\n"
+                        + "  \"totalMillis\": 0.0,\n"
+                        + "  \"phases\": {},\n"
+                        + "  \"counts\": {},\n"
+                        + "  \"caches\": {}\n"
+                        + "}\n",
+                withoutMillis(new TimingReport().toJson()));
+    }
+
+    @Test
+    void layout() {
+        TimingReport report = new TimingReport();
+        report.attribute("goal", "resolve-test-dependencies");
+        report.attribute("project", "org.jenkins-ci.plugins:foo:1.0");
+        try (TimingReport.Phase phase = report.phase("war-scan")) {
+            report.count("plugins", 42);
+        }
+        try (TimingReport.Phase phase = report.phase("resolution")) {
+            report.count("plugins", 43);
+            report.count("linked", 0);
+        }
+        report.cache("artifact-metadata", 10, 2);
+        report.cache("resolution", 0, 0);
+        assertEquals(
+                "{\n"
+                        + "  \"goal\": \"resolve-test-dependencies\",\n"
+                        + "  \"project\": \"org.jenkins-ci.plugins:foo:1.0\",\n"
+                        + "  \"totalMillis\": 0.0,\n"
+                        + "  \"phases\": {\n"
+                        + "    \"war-scan\": 0.0,\n"
+                        + "    \"resolution\": 0.0\n"
+                        + "  },\n"
+                        + "  \"counts\": {\n"
+                        + "    \"plugins\": 43,\n"
+                        + "    \"linked\": 0\n"
+                        + "  },\n"
+                        + "  \"caches\": {\n"
+                        + "    \"artifact-metadata\": {\"hits\": 10, \"misses\": 2, \"hitRate\": 0.833},\n"
+                        + "    \"resolution\": {\"hits\": 0, \"misses\": 0, \"hitRate\": null}\n"
+                        + "  }\n"
+                        + "}\n",
+                withoutMillis(report.toJson()));
+    }
+
+    @Test
+    void phaseAccumulates() throws Exception {
+        TimingReport report = new TimingReport();
+        for (int i = 0; i < 2; i++) {
+            try (TimingReport.Phase phase = report.phase("war-scan")) {
+                Thread.sleep(50);
+            }
+        }
+        Matcher m = Pattern.compile("\"war-scan\": ([0-9.]+)").matcher(report.toJson());
+        assertTrue(m.find());
+        assertTrue(Double.parseDouble(m.group(1)) >= 100, m.group(1));
+    }
+
+    @Test
+    void escaping() {
+        TimingReport report = new TimingReport();
+        report.attribute("project", "\"quoted\" C:\\path\nline\ttab\u0001");
+        report.attribute("outcome", null);
+        String json = report.toJson();
+        assertThat(json, containsString("\"project\": \"\\\"quoted\\\" C:\\\\path\\nline\\ttab\\u0001\",\n"));
+        assertThat(json, containsString("\"outcome\": null,\n"));
+    }
+
+    @Test
+    void write() throws Exception {
+        File file = dir.resolve("target/hpi/timing.json").toFile();
+        TimingReport report = new TimingReport();
+        report.attribute("goal", "resolve-test-dependencies");
+        report.write(file);
+        assertThat(Files.readString(file.toPath()), containsString("\"goal\": \"resolve-test-dependencies\""));
+    }
+}
@@ -0,0 +1,272 @@
+package org.jenkinsci.maven.plugins.hpi;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.arrayContaining;
+import static org.hamcrest.Matchers.hasKey;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class WebappContentStateTest {
+
+    /**
+     * A modification time well in the past, so that it is not racy.
+     */
+    private static final long T = 1_000_000_000_000L;
+
+    @TempDir
+    Path dir;
+
+    private File stateFile() {
+        return dir.resolve("state.properties").toFile();
+    }
+
+    private File webapp() {
+        return dir.resolve("webapp").toFile();
+    }
+
+    private WebappContentState load() {
+        return WebappContentState.load(stateFile(), webapp());
+    }
+
+    private static File write(Path file, String content, long lastModified) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(lastModified));
+        return file.toFile();
+    }
+
+    /**
+     * Runs a build which places the given source into the webapp as {@code target}, then prunes and saves.
+     */
+    private WebappContentState build(File source, File target) throws IOException {
+        WebappContentState state = load();
+        state.place(source, target);
+        state.prune();
+        state.save();
+        return state;
+    }
+
+    @Test
+    void copyThenUpToDate() throws Exception {
+        File source = write(dir.resolve("src/index.jelly"), "one", T);
+        File target = new File(webapp(), "index.jelly");
+        assertEquals("1 files copied, 0 up to date, 0 removed", build(source, target).toString());
+        assertEquals("one", Files.readString(target.toPath()));
+        assertEquals(T, target.lastModified());
+        assertEquals("0 files copied, 1 up to date, 0 removed", build(source, target).toString());
+    }
+
+    @Test
+    void touchedButNotModified() throws Exception {
+        File source = write(dir.resolve("src/index.jelly"), "one", T);
+        File target = new File(webapp(), "index.jelly");
+        build(source, target);
+        Files.setLastModifiedTime(source.toPath(), FileTime.fromMillis(T + 1000));
+        assertEquals("0 files copied, 1 up to date, 0 removed", build(source, target).toString());
+        // the copy is left alone
+        assertEquals(T, target.lastModified());
+        assertEquals("0 files copied, 1 up to date, 0 removed", build(source, target).toString());
+    }
+
+    @Test
+    void modifiedWithTheSameSize() throws Exception {
+        File source = write(dir.resolve("src/index.jelly"), "one", T);
+        File target = new File(webapp(), "index.jelly");
+        build(source, target);
+        write(source.toPath(), "two", T + 1000);
+        assertEquals("1 files copied, 0 up to date, 0 removed", build(source, target).toString());
+        assertEquals("two", Files.readString(target.toPath()));
+    }
+
+    @Test
+    void adoptOldCopy() throws Exception {
+        File source = write(dir.resolve("src/index.jelly"), "one", T);
+        // as left by a build which did not record its copies
+        File target = write(webapp().toPath().resolve("index.jelly"), "one", T);
+        assertEquals("0 files copied, 1 up to date, 0 removed", build(source, target).toString());
+        // and it is now ours to prune
+        WebappContentState state = load();
+        state.prune();
+        assertEquals("0 files copied, 0 up to date, 1 removed", state.toString());
+        assertFalse(target.exists());
+    }
+
+    @Test
+    void keepNewerForeignFile() throws Exception {
+        File source = write(dir.resolve("src/index.jelly"), "one", T);
+        // for example filtered from another resource directory
+        File target = write(webapp().toPath().resolve("index.jelly"), "filtered", T + 1000);
+        assertEquals("0 files copied, 0 up to date, 0 removed", build(source, target).toString());
+        assertEquals("filtered", Files.readString(target.toPath()));
+        // and it is never ours to prune
+        WebappContentState state = load();
+        state.prune();
+        assertTrue(target.exists());
+    }
+
+    @Test
+    void replaceOlderForeignFile() throws Exception {
+        File source = write(dir.resolve("src/index.jelly"), "one", T + 1000);
+        File target = write(webapp().toPath().resolve("index.jelly"), "stale", T);
+        assertEquals("1 files copied, 0 up to date, 0 removed", build(source, target).toString());
+        assertEquals("one", Files.readString(target.toPath()));
+    }
+
+    @Test
+    void copyModifiedAfterwardsIsReplaced() throws Exception {
+        File source = write(dir.resolve("src/index.jelly"), "one", T + 1000);
+        File target = new File(webapp(), "index.jelly");
+        build(source, target);
+        write(target.toPath(), "changed", T);
+        assertEquals("1 files copied, 0 up to date, 0 removed", build(source, target).toString());
+        assertEquals("one", Files.readString(target.toPath()));
+    }
+
+    @Test
+    void prune() throws Exception {
+        File source = write(dir.resolve("src/a/b/c.txt"), "one", T);
+        File target = new File(webapp(), "a/b/c.txt");
+        build(source, target);
+        Files.writeString(webapp().toPath().resolve("kept.txt"), "not ours");
+        WebappContentState state = load();
+        state.prune();
+        state.save();
+        assertEquals("0 files copied, 0 up to date, 1 removed", state.toString());
+        assertFalse(target.exists());
+        assertFalse(new File(webapp(), "a").exists());
+        assertTrue(new File(webapp(), "kept.txt").exists());
+    }
+
+    @Test
+    void pruneKeepsModifiedCopy() throws Exception {
+        File source = write(dir.resolve("src/index.jelly"), "one", T);
+        File target = new File(webapp(), "index.jelly");
+        build(source, target);
+        write(target.toPath(), "edited", T);
+        WebappContentState state = load();
+        state.prune();
+        assertEquals("0 files copied, 0 up to date, 0 removed", state.toString());
+        assertEquals("edited", Files.readString(target.toPath()));
+    }
+
+    @Test
+    void corruptStateFile() throws Exception {
+        File source = write(dir.resolve("src/index.jelly"), "one", T);
+        File target = new File(webapp(), "index.jelly");
+        build(source, target);
+        // an invalid unicode escape
+        Files.write(stateFile().toPath(), "file\\:index.jelly=\\u00zz\n".getBytes(StandardCharsets.ISO_8859_1));
+        assertEquals("0 files copied, 1 up to date, 0 removed", build(source, target).toString());
+        // a malformed entry
+        Files.writeString(stateFile().toPath(), "file\\:index.jelly=garbage\n");
+        write(source.toPath(), "two", T + 1000);
+        assertEquals("1 files copied, 0 up to date, 0 removed", build(source, target).toString());
+        assertEquals("two", Files.readString(target.toPath()));
+        assertEquals("0 files copied, 1 up to date, 0 removed", build(source, target).toString());
+    }
+
+    @Test
+    void disabled() throws Exception {
+        File source = write(dir.resolve("src/index.jelly"), "one", T);
+        File target = new File(webapp(), "index.jelly");
+        WebappContentState state = WebappContentState.disabled(webapp());
+        state.place(source, target);
+        state.prune();
+        state.save();
+        assertEquals("one", Files.readString(target.toPath()));
+        assertFalse(stateFile().exists());
+    }
+
+    private static Supplier<String[]> counting(AtomicInteger scans, String... files) {
+        return () -> {
+            scans.incrementAndGet();
+            return files;
+        };
+    }
+
+    @Test
+    void scan() throws Exception {
+        Path root = dir.resolve("src/main/webapp");
+        write(root.resolve("index.jelly"), "one", T);
+        write(root.resolve("css/style.css"), "one", T);
+        Files.setLastModifiedTime(root.resolve("css"), FileTime.fromMillis(T));
+        Files.setLastModifiedTime(root, FileTime.fromMillis(T));
+        AtomicInteger scans = new AtomicInteger();
+        Supplier<String[]> scanner = counting(scans, "index.jelly", "css/style.css");
+
+        WebappContentState state = load();
+        assertThat(state.scan(root.toFile(), "**", scanner), arrayContaining("index.jelly", "css/style.css"));
+        state.save();
+        assertEquals(1, scans.get());
+
+        state = load();
+        assertThat(state.scan(root.toFile(), "**", scanner), arrayContaining("index.jelly", "css/style.css"));
+        state.save();
+        assertEquals(1, scans.get(), "nothing was added or removed");
+
+        state = load();
+        state.scan(root.toFile(), "** -**/*.css", scanner);
+        state.save();
+        assertEquals(2, scans.get(), "the patterns changed");
+
+        write(root.resolve("css/print.css"), "one", T);
+        Files.setLastModifiedTime(root.resolve("css"), FileTime.fromMillis(T + 1000));
+        state = load();
+        state.scan(root.toFile(), "** -**/*.css", scanner);
+        state.save();
+        assertEquals(3, scans.get(), "a file was added");
+    }
+
+    @Test
+    void scanRacyDirectory() throws Exception {
+        Path root = dir.resolve("src/main/webapp");
+        // modified just now, so another change within the same clock tick could go unnoticed
+        Files.createDirectories(root);
+        AtomicInteger scans = new AtomicInteger();
+        Supplier<String[]> scanner = counting(scans);
+
+        for (int i = 1; i <= 2; i++) {
+            WebappContentState state = load();
+            assertEquals(0, state.scan(root.toFile(), "**", scanner).length);
+            state.save();
+            assertEquals(i, scans.get());
+        }
+    }
+
+    @Test
+    void streaming() throws Exception {
+        File source = write(dir.resolve("src/index.jelly"), "one", T);
+        File foreignSource = write(dir.resolve("src/config.jelly"), "one", T);
+        File target = new File(webapp(), "css/index.jelly");
+        File foreign = write(webapp().toPath().resolve("config.jelly"), "filtered", T + 1000);
+        build(source, target);
+
+        WebappContentState state = WebappContentState.streaming(stateFile(), webapp());
+        state.place(source, target);
+        state.place(foreignSource, foreign);
+        state.prune();
+        state.save();
+        assertEquals(source, state.streamed().get("css/index.jelly"));
+        assertThat(state.streamed(), not(hasKey("config.jelly")));
+        assertEquals("1 files streamed, 1 removed", state.toString());
+        // the copy from the earlier build is gone, the newer foreign file is kept to be archived instead
+        assertFalse(target.exists());
+        assertTrue(foreign.exists());
+
+        // and is copied again once no longer streaming
+        assertEquals("1 files copied, 0 up to date, 0 removed", build(source, target).toString());
+    }
+}
@@ -2,10 +2,24 @@ package org.jenkinsci.maven.plugins.hpi.util;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
 import java.util.Collections;
+import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 class UtilsTest {
 
@@ -55,4 +69,64 @@ class UtilsTest {
     private static <T> void checkUnion(String reason, T[] expected, Set<T>... unions) {
         assertThat(reason, Utils.unionOf(unions), containsInAnyOrder(expected));
     }
+
+    @Test
+    void mapInParallelKeepsOrder() throws Exception {
+        List<Integer> inputs = IntStream.range(0, 100).boxed().collect(Collectors.toList());
+        List<Integer> expected = inputs.stream().map(i -> i * i).collect(Collectors.toList());
+        assertEquals(expected, Utils.mapInParallel(inputs, 1, i -> i * i));
+        assertEquals(expected, Utils.mapInParallel(inputs, 8, i -> {
+            Thread.sleep(100 - i);
+            return i * i;
+        }));
+    }
+
+    @Test
+    void mapInParallelPropagatesCheckedExceptions() {
+        IOException x = assertThrows(IOException.class, () -> Utils.mapInParallel(List.of(1, 2, 3), 4, i -> {
+            if (i > 1) {
+                throw new IOException("failed on " + i);
+            }
+            return i;
+        }));
+        assertEquals("failed on 2", x.getMessage());
+    }
+
+    @Test
+    void sha256(@TempDir Path dir) throws Exception {
+        String expected = "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad";
+        assertEquals(expected, Utils.sha256("abc".getBytes(StandardCharsets.US_ASCII)));
+        Path file = dir.resolve("abc");
+        Files.writeString(file, "abc", StandardCharsets.US_ASCII);
+        assertEquals(expected, Utils.sha256(file));
+    }
+
+    @Test
+    void writeAtomically(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("sub/file");
+        Utils.writeAtomically(file, os -> os.write("one".getBytes(StandardCharsets.US_ASCII)));
+        assertEquals("one", Files.readString(file));
+        Utils.writeAtomically(file, os -> os.write("two".getBytes(StandardCharsets.US_ASCII)));
+        assertEquals("two", Files.readString(file));
+        IOException x = assertThrows(IOException.class, () -> Utils.writeAtomically(file, os -> {
+            os.write("three".getBytes(StandardCharsets.US_ASCII));
+            throw new IOException("interrupted");
+        }));
+        assertEquals("interrupted", x.getMessage());
+        assertEquals("two", Files.readString(file), "a failed write leaves the old content alone");
+        try (Stream<Path> entries = Files.list(file.getParent())) {
+            assertEquals(List.of(file), entries.collect(Collectors.toList()), "no temporary file is left behind");
+        }
+    }
+
+    @Test
+    void writeIfChanged(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("file");
+        assertTrue(Utils.writeIfChanged(file, "one".getBytes(StandardCharsets.US_ASCII)));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(1_000_000_000_000L));
+        assertFalse(Utils.writeIfChanged(file, "one".getBytes(StandardCharsets.US_ASCII)));
+        assertEquals(FileTime.fromMillis(1_000_000_000_000L), Files.getLastModifiedTime(file));
+        assertTrue(Utils.writeIfChanged(file, "two".getBytes(StandardCharsets.US_ASCII)));
+        assertEquals("two", Files.readString(file));
+    }
 }